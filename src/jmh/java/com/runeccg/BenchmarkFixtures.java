@@ -0,0 +1,126 @@
+package com.runeccg;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.overlay.OverlayManager;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stand-ins for the client services the plugin needs, so benchmarks can drive it without a game.
+ */
+final class BenchmarkFixtures
+{
+	static final String PROFILE_KEY = "benchmark";
+
+	private BenchmarkFixtures()
+	{
+	}
+
+	/**
+	 * A logged in {@link Client} on a world of the given types. Implemented with a plain proxy
+	 * rather than a mock so calls on it do not record invocations or allocate.
+	 */
+	static Client client(EnumSet<WorldType> worldTypes)
+	{
+		// Only read once on the first tick, to seed skills the benchmark has not sent yet
+		int[] skillExperiences = new int[Skill.values().length];
+		skillExperiences[Skill.HITPOINTS.ordinal()] = 1154;
+
+		return (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{Client.class},
+			(proxy, method, args) ->
+			{
+				switch (method.getName())
+				{
+					case "getWorldType":
+						return worldTypes;
+					case "getGameState":
+						return GameState.LOGGED_IN;
+					case "getSkillExperiences":
+						return skillExperiences;
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "BenchmarkClient";
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	static ConfigManager configManager()
+	{
+		ConfigManager configManager = mock(ConfigManager.class);
+		when(configManager.getRSProfileKey()).thenReturn(PROFILE_KEY);
+		return configManager;
+	}
+
+	/**
+	 * A plugin wired to the given client and config manager, but not started.
+	 */
+	static RuneCCGPlugin createPlugin(Client client, ConfigManager configManager, ScheduledExecutorService executor) throws Exception
+	{
+		Injector injector = injector(client, configManager, executor);
+		RuneCCGPlugin plugin = injector.getInstance(RuneCCGPlugin.class);
+		Field injectorField = Plugin.class.getDeclaredField("injector");
+		injectorField.setAccessible(true);
+		injectorField.set(plugin, injector);
+		return plugin;
+	}
+
+	/**
+	 * An injector for the plugin's classes, wired to the given client and config manager.
+	 */
+	static Injector injector(Client client, ConfigManager configManager, ScheduledExecutorService executor) throws Exception
+	{
+		File journalDirectory = Files.createTempDirectory("runeccg-benchmark").toFile();
+		journalDirectory.deleteOnExit();
+
+		return Guice.createInjector(binder ->
+		{
+			binder.bind(Client.class).toInstance(client);
+			binder.bind(ConfigManager.class).toInstance(configManager);
+			binder.bind(ClientToolbar.class).toInstance(mock(ClientToolbar.class));
+			binder.bind(OverlayManager.class).toInstance(mock(OverlayManager.class));
+			// Plugin config with every item at its default
+			binder.bind(RuneCCGConfig.class).toInstance(mock(RuneCCGConfig.class));
+			binder.bind(ScheduledExecutorService.class).toInstance(executor);
+			// Measure the plugin as players run it, with metrics off
+			binder.bindConstant().annotatedWith(Names.named("developerMode")).to(false);
+			// Keep benchmark journals out of the real .runelite directory
+			binder.bind(CoinJournal.class).toInstance(new CoinJournal(journalDirectory));
+		});
+	}
+
+	/**
+	 * A started plugin wired to the given client and config manager.
+	 */
+	static RuneCCGPlugin startPlugin(Client client, ConfigManager configManager, ScheduledExecutorService executor) throws Exception
+	{
+		RuneCCGPlugin plugin = createPlugin(client, configManager, executor);
+		plugin.startUp();
+		return plugin;
+	}
+
+	static ScheduledExecutorService executor()
+	{
+		return Executors.newSingleThreadScheduledExecutor();
+	}
+}
@@ -0,0 +1,70 @@
+package com.runeccg;
+
+import com.runeccg.verifier.CodeVerifier;
+import com.runeccg.verifier.VerificationResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Redemption throughput of {@link CodeVerifier} shared by four threads, the way a local
+ * redemption service would use it. Every iteration starts with an empty nonce index, so
+ * most codes verify as new and the rest as replays once the pregenerated codes run out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CodeVerifierBenchmark
+{
+	private static final int CODES = 1 << 20;
+
+	private List<String> codes;
+	private CodeVerifier verifier;
+	private final AtomicInteger next = new AtomicInteger();
+	private long now;
+
+	@Setup(Level.Trial)
+	public void generateCodes()
+	{
+		CodeSigner signer = new CodeSigner();
+		codes = new ArrayList<>(CODES);
+		// In batches as large as a cash-out can ask for
+		while (codes.size() < CODES)
+		{
+			codes.addAll(signer.encodeBatch(10, Math.min(CodeSigner.MAX_BATCH_SIZE, CODES - codes.size())));
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetVerifier()
+	{
+		now = System.currentTimeMillis() / 1000;
+		verifier = new CodeVerifier(CodeSigner.SECRET_KEY.getBytes(StandardCharsets.UTF_8),
+			TimeUnit.DAYS.toSeconds(1), 60, CODES);
+		next.set(0);
+	}
+
+	@Benchmark
+	public VerificationResult verify()
+	{
+		return verifier.verify(codes.get(next.getAndIncrement() & (CODES - 1)), now);
+	}
+}
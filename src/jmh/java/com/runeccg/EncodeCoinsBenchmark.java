@@ -0,0 +1,64 @@
+package com.runeccg;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of generating a single cash-out code, sampled so the report includes percentiles.
+ * The single shot benchmarks run in a fresh JVM per measurement to capture what the player pays
+ * on their first click, with and without {@link CodeSigner#warmUp()} having run at startup.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodeCoinsBenchmark
+{
+	private CodeSigner signer;
+	private CodeSigner warmSigner;
+
+	@Setup
+	public void setUp()
+	{
+		signer = new CodeSigner();
+		warmSigner = new CodeSigner();
+		warmSigner.warmUp();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	@Fork(1)
+	public String encodeCoins()
+	{
+		return warmSigner.encode(25);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public String firstCodeCold()
+	{
+		return signer.encode(25);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public String firstCodeWarmedUp()
+	{
+		return warmSigner.encode(25);
+	}
+}
@@ -0,0 +1,58 @@
+package com.runeccg;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.WorldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of working out whether XP counts on a members world and on a seasonal world: once when
+ * entering the world, and on every stat change after that.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventWorldBenchmark
+{
+	@Param({"MEMBERS", "SEASONAL"})
+	public WorldType worldType;
+
+	private EnumSet<WorldType> worldTypes;
+	private XpTracker xpTracker;
+	private WorldEligibility eligibility;
+
+	@Setup
+	public void setUp()
+	{
+		worldTypes = EnumSet.of(WorldType.MEMBERS, worldType);
+		xpTracker = new XpTracker();
+		eligibility = new WorldEligibility(xpTracker);
+		eligibility.enter(CoinRules.mask(worldTypes), false);
+	}
+
+	@Benchmark
+	public WorldEligibility.State enterWorld()
+	{
+		int mask = CoinRules.mask(worldTypes);
+		return eligibility.enter(mask, CoinRules.DEFAULT.isExcluded(CoinRules.row(mask)));
+	}
+
+	@Benchmark
+	public boolean isEligible()
+	{
+		return xpTracker.isEligible();
+	}
+}
@@ -0,0 +1,78 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to export a long history: 300,000 journal records, an award for every cash-out, in each format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExportBenchmark
+{
+	private static final int CASH_OUTS = 150_000;
+
+	@Param({"CSV", "JSON"})
+	public LedgerExport.Format format;
+
+	private File directory;
+	private LedgerExport export;
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("runeccg-export-benchmark").toFile();
+		CoinJournal journal = new CoinJournal(directory);
+		CodeSigner signer = new CodeSigner();
+		byte[] code = new byte[CodeSigner.CODE_LENGTH];
+
+		journal.open(BenchmarkFixtures.PROFILE_KEY);
+		for (int i = 0; i < CASH_OUTS; i++)
+		{
+			journal.appendAward(1000, 0, 1);
+			System.arraycopy(Base64.getDecoder().decode(signer.encode(1)), 0, code, 0, code.length);
+			journal.appendCashOut(code, 1, 0, 0);
+		}
+		journal.close();
+
+		export = new LedgerExport(journal);
+		file = directory.toPath().resolve("history." + format.getExtension());
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public int export() throws IOException
+	{
+		return export.export(BenchmarkFixtures.PROFILE_KEY, file, format);
+	}
+}
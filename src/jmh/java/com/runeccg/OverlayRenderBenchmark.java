@@ -0,0 +1,80 @@
+package com.runeccg;
+
+import com.google.inject.Injector;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.EnumSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.WorldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-frame cost of {@link RuneCCGOverlay#render}, drawing into an image the size of a fixed mode
+ * game view. {@link #unchanged} is what almost every frame costs, {@link #afterAward} includes
+ * redrawing the cached image after the balance changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverlayRenderBenchmark
+{
+	private ScheduledExecutorService executor;
+	private CoinLedger ledger;
+	private RuneCCGOverlay overlay;
+	private BufferedImage frame;
+	private Graphics2D graphics;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		executor = BenchmarkFixtures.executor();
+		Injector injector = BenchmarkFixtures.injector(
+			BenchmarkFixtures.client(EnumSet.of(WorldType.MEMBERS)),
+			BenchmarkFixtures.configManager(),
+			executor);
+
+		ledger = injector.getInstance(CoinLedger.class);
+		ledger.load();
+		ledger.award(12_345);
+		overlay = injector.getInstance(RuneCCGOverlay.class);
+
+		frame = new BufferedImage(765, 503, BufferedImage.TYPE_INT_RGB);
+		graphics = frame.createGraphics();
+		overlay.render(graphics);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		graphics.dispose();
+		ledger.unload();
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public Object unchanged()
+	{
+		return overlay.render(graphics);
+	}
+
+	@Benchmark
+	public Object afterAward()
+	{
+		ledger.award(1);
+		return overlay.render(graphics);
+	}
+}
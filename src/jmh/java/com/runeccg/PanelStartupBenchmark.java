@@ -0,0 +1,56 @@
+package com.runeccg;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the panel on the EDT: {@link #construct} is what {@code startUp} pays for the shell,
+ * {@link #constructAndBuild} adds building the views when the tab is first opened. Single shots
+ * in a fresh fork, as startup only ever happens once per client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PanelStartupBenchmark
+{
+	private final BufferedImage icon = new BufferedImage(ImageCache.PANEL_ICON_SIZE, ImageCache.PANEL_ICON_SIZE,
+		BufferedImage.TYPE_INT_ARGB);
+
+	@Benchmark
+	public RuneCCGPanel construct() throws Exception
+	{
+		RuneCCGPanel[] panel = new RuneCCGPanel[1];
+		SwingUtilities.invokeAndWait(() ->
+		{
+			panel[0] = new RuneCCGPanel();
+			panel[0].setCoinIcon(icon);
+		});
+		return panel[0];
+	}
+
+	@Benchmark
+	public RuneCCGPanel constructAndBuild() throws Exception
+	{
+		RuneCCGPanel[] panel = new RuneCCGPanel[1];
+		SwingUtilities.invokeAndWait(() ->
+		{
+			panel[0] = new RuneCCGPanel();
+			panel[0].setCoinIcon(icon);
+			panel[0].onActivate();
+		});
+		return panel[0];
+	}
+}
@@ -0,0 +1,94 @@
+package com.runeccg;
+
+import java.util.EnumSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.StatChanged;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link RuneCCGPlugin#onStatChanged} on a normal world, cycling through every skill
+ * with a small XP drop each time. Each operation also creates its StatChanged event, as the client
+ * would, so that object shows up in the normalized allocation rate.
+ * <p>
+ * Drops are only buffered until the next game tick, so {@link #burstThenTick} also measures a
+ * combat-style burst of drops in several skills followed by the tick that settles them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatChangedBenchmark
+{
+	private static final Skill[] SKILLS = Skill.values();
+	private static final int XP_PER_DROP = 37;
+	private static final int DROPS_PER_BURST = 4;
+
+	private ScheduledExecutorService executor;
+	private RuneCCGPlugin plugin;
+	private final int[] skillXp = new int[SKILLS.length];
+	private int nextSkill;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		executor = BenchmarkFixtures.executor();
+		plugin = BenchmarkFixtures.startPlugin(
+			BenchmarkFixtures.client(EnumSet.of(WorldType.MEMBERS)),
+			BenchmarkFixtures.configManager(),
+			executor);
+
+		// The first update of each skill only sets its starting point
+		for (Skill skill : SKILLS)
+		{
+			plugin.onStatChanged(new StatChanged(skill, 0, 1, 1));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception
+	{
+		plugin.shutDown();
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public void onStatChanged()
+	{
+		drop();
+	}
+
+	@Benchmark
+	public void burstThenTick()
+	{
+		for (int i = 0; i < DROPS_PER_BURST; i++)
+		{
+			drop();
+		}
+		plugin.onGameTick(new GameTick());
+	}
+
+	private void drop()
+	{
+		final int skill = nextSkill;
+		nextSkill = skill + 1 == SKILLS.length ? 0 : skill + 1;
+
+		final int xp = skillXp[skill] += XP_PER_DROP;
+		plugin.onStatChanged(new StatChanged(SKILLS[skill], xp, 99, 99));
+	}
+}
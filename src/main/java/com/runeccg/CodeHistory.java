@@ -0,0 +1,266 @@
+package com.runeccg;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every cash-out code issued to the loaded profile, rebuilt from its {@link CoinJournal}.
+ * <p>
+ * Entries are kept in parallel arrays rather than as an object each, so tens of thousands of
+ * them stay cheap to hold and to walk. Rows are numbered in the order codes were issued, which
+ * is also time order, so a day is found by binary search on the timestamps. Amounts and nonces
+ * are indexed as codes are added.
+ * <p>
+ * Rebuilt on the ledger thread when a profile is loaded, added to on that thread when a
+ * cash-out is committed, marked from the EDT, and read from the EDT, so all state is guarded by
+ * the instance lock and the change listener runs on whichever of those threads made the change.
+ * Reads of a row that no longer exists, after the history was cleared for another profile, return
+ * empty values instead of failing.
+ */
+class CodeHistory
+{
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int[] NO_ROWS = new int[0];
+
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	private int[] amounts = new int[INITIAL_CAPACITY];
+	private byte[] codes = new byte[INITIAL_CAPACITY * CodeSigner.CODE_LENGTH];
+	private final BitSet redeemed = new BitSet();
+	private final Map<Integer, RowList> rowsByAmount = new HashMap<>();
+	private final Map<Long, Integer> rowsByNonce = new HashMap<>();
+	private int size;
+	private Runnable changeListener;
+
+	/**
+	 * Sets a callback run, on the thread making the change, after entries are added, marked, or cleared.
+	 */
+	synchronized void setChangeListener(Runnable changeListener)
+	{
+		this.changeListener = changeListener;
+	}
+
+	synchronized int size()
+	{
+		return size;
+	}
+
+	void clear()
+	{
+		synchronized (this)
+		{
+			size = 0;
+			redeemed.clear();
+			rowsByAmount.clear();
+			rowsByNonce.clear();
+		}
+		fireChanged();
+	}
+
+	/**
+	 * Adds an issued code.
+	 *
+	 * @param timestamp when it was issued, in epoch milliseconds
+	 * @param code the raw {@value CodeSigner#CODE_LENGTH} bytes of the code
+	 * @return the row of the new entry
+	 */
+	synchronized int add(long timestamp, int amount, byte[] code)
+	{
+		if (size == timestamps.length)
+		{
+			int capacity = size * 2;
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			amounts = Arrays.copyOf(amounts, capacity);
+			codes = Arrays.copyOf(codes, capacity * CodeSigner.CODE_LENGTH);
+		}
+
+		int row = size++;
+		timestamps[row] = timestamp;
+		amounts[row] = amount;
+		System.arraycopy(code, 0, codes, row * CodeSigner.CODE_LENGTH, CodeSigner.CODE_LENGTH);
+		rowsByAmount.computeIfAbsent(amount, a -> new RowList()).add(row);
+		rowsByNonce.put(nonce(code), row);
+		return row;
+	}
+
+	/**
+	 * Marks the entry holding a code as redeemed or not.
+	 *
+	 * @return the row of the code, or -1 if it is not in the history
+	 */
+	synchronized int setRedeemed(byte[] code, boolean isRedeemed)
+	{
+		Integer row = rowsByNonce.get(nonce(code));
+		if (row == null)
+		{
+			return -1;
+		}
+
+		redeemed.set(row, isRedeemed);
+		return row;
+	}
+
+	/**
+	 * Replaces every entry of another history with a copy of these entries, for example to keep
+	 * a profile's codes while another profile is loaded. The target's listener is not notified.
+	 */
+	void copyTo(CodeHistory target)
+	{
+		synchronized (this)
+		{
+			synchronized (target)
+			{
+				int capacity = Math.max(size, INITIAL_CAPACITY);
+				target.timestamps = Arrays.copyOf(timestamps, capacity);
+				target.amounts = Arrays.copyOf(amounts, capacity);
+				target.codes = Arrays.copyOf(codes, capacity * CodeSigner.CODE_LENGTH);
+				target.size = size;
+				target.redeemed.clear();
+				target.redeemed.or(redeemed);
+
+				target.rowsByAmount.clear();
+				target.rowsByNonce.clear();
+				for (int row = 0; row < size; row++)
+				{
+					target.rowsByAmount.computeIfAbsent(amounts[row], a -> new RowList()).add(row);
+					target.rowsByNonce.put(ByteBuffer.wrap(codes, row * CodeSigner.CODE_LENGTH, Long.BYTES).getLong(), row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listener of changes made with {@link #add} or {@link #setRedeemed}.
+	 */
+	void fireChanged()
+	{
+		Runnable listener;
+		synchronized (this)
+		{
+			listener = changeListener;
+		}
+
+		if (listener != null)
+		{
+			listener.run();
+		}
+	}
+
+	synchronized long getTimestamp(int row)
+	{
+		return row < size ? timestamps[row] : 0;
+	}
+
+	synchronized int getAmount(int row)
+	{
+		return row < size ? amounts[row] : 0;
+	}
+
+	synchronized boolean isRedeemed(int row)
+	{
+		return row < size && redeemed.get(row);
+	}
+
+	/**
+	 * @return the raw bytes of a row's code, or null if the row does not exist
+	 */
+	synchronized byte[] getCodeBytes(int row)
+	{
+		if (row >= size)
+		{
+			return null;
+		}
+
+		int offset = row * CodeSigner.CODE_LENGTH;
+		return Arrays.copyOfRange(codes, offset, offset + CodeSigner.CODE_LENGTH);
+	}
+
+	/**
+	 * @return a row's code in the form shown to the player, or null if the row does not exist
+	 */
+	String getCode(int row)
+	{
+		byte[] code = getCodeBytes(row);
+		return code != null ? Base64.getEncoder().encodeToString(code) : null;
+	}
+
+	/**
+	 * @return the rows of codes issued on a day, in ascending order
+	 */
+	synchronized int[] findByDate(LocalDate date, ZoneId zone)
+	{
+		long from = date.atStartOfDay(zone).toInstant().toEpochMilli();
+		long to = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+		int start = lowerBound(from);
+		int end = lowerBound(to);
+		if (start >= end)
+		{
+			return NO_ROWS;
+		}
+
+		int[] rows = new int[end - start];
+		for (int i = 0; i < rows.length; i++)
+		{
+			rows[i] = start + i;
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows of codes worth an amount, in ascending order
+	 */
+	synchronized int[] findByAmount(int amount)
+	{
+		RowList rows = rowsByAmount.get(amount);
+		return rows != null ? rows.toArray() : NO_ROWS;
+	}
+
+	private int lowerBound(long timestamp)
+	{
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (timestamps[mid] < timestamp)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static long nonce(byte[] code)
+	{
+		return ByteBuffer.wrap(code, 0, Long.BYTES).getLong();
+	}
+
+	private static final class RowList
+	{
+		private int[] rows = new int[4];
+		private int size;
+
+		void add(int row)
+		{
+			if (size == rows.length)
+			{
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			rows[size++] = row;
+		}
+
+		int[] toArray()
+		{
+			return Arrays.copyOf(rows, size);
+		}
+	}
+}
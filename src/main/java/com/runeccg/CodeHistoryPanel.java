@@ -0,0 +1,293 @@
+package com.runeccg;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.GridLayout;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListSelectionModel;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+
+/**
+ * Lists every code in a {@link CodeHistory}, newest first, with search by day or amount.
+ * <p>
+ * The list has a fixed cell size and a model that maps list indexes onto history rows without
+ * copying them, so only the rows scrolled into view are ever rendered, however long the history
+ * is. Must only be used on the EDT.
+ */
+class CodeHistoryPanel extends JPanel
+{
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+	// Rendered only to size the cells, never shown
+	private static final int PROTOTYPE_ROW = -1;
+
+	private final CodeHistory history;
+	private final BiConsumer<Integer, Boolean> redeemedCallback;
+	private final RowModel model = new RowModel();
+	private final JList<Integer> list = new JList<>(model);
+	private final JTextField searchField = new JTextField();
+	private final JLabel countLabel = new JLabel();
+	private final JButton redeemedButton = new JButton("Mark Redeemed");
+
+	CodeHistoryPanel(CodeHistory history, BiConsumer<Integer, Boolean> redeemedCallback, Runnable onExport, Runnable onBack)
+	{
+		this.history = history;
+		this.redeemedCallback = redeemedCallback;
+
+		setBackground(ColorScheme.DARK_GRAY_COLOR);
+		setBorder(new EmptyBorder(10, 0, 0, 0));
+		setLayout(new BorderLayout(0, 8));
+
+		JPanel searchPanel = new JPanel(new BorderLayout(0, 5));
+		searchPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+
+		JLabel searchLabel = new JLabel("Search by date (yyyy-mm-dd) or amount:");
+		searchLabel.setFont(FontManager.getRunescapeSmallFont());
+		searchPanel.add(searchLabel, BorderLayout.NORTH);
+
+		searchField.getDocument().addDocumentListener(new DocumentListener()
+		{
+			@Override
+			public void insertUpdate(DocumentEvent e)
+			{
+				refresh();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e)
+			{
+				refresh();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e)
+			{
+				refresh();
+			}
+		});
+		searchPanel.add(searchField, BorderLayout.CENTER);
+
+		countLabel.setFont(FontManager.getRunescapeSmallFont());
+		countLabel.setForeground(Color.GRAY);
+		searchPanel.add(countLabel, BorderLayout.SOUTH);
+
+		add(searchPanel, BorderLayout.NORTH);
+
+		list.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setCellRenderer(new RowRenderer());
+		// A prototype sizes every cell from one render, instead of measuring each row
+		list.setPrototypeCellValue(PROTOTYPE_ROW);
+		list.addListSelectionListener(e -> updateRedeemedButton());
+		add(new JScrollPane(list), BorderLayout.CENTER);
+
+		JPanel buttons = new JPanel(new GridLayout(0, 1, 0, 5));
+		buttons.setBackground(ColorScheme.DARK_GRAY_COLOR);
+
+		JButton copyButton = new JButton("Copy Code");
+		copyButton.addActionListener(e -> copySelected());
+		buttons.add(copyButton);
+
+		redeemedButton.addActionListener(e -> toggleSelectedRedeemed());
+		buttons.add(redeemedButton);
+
+		JButton exportButton = new JButton("Export History...");
+		exportButton.addActionListener(e -> onExport.run());
+		buttons.add(exportButton);
+
+		JButton backButton = new JButton("Back");
+		backButton.addActionListener(e -> onBack.run());
+		buttons.add(backButton);
+
+		add(buttons, BorderLayout.SOUTH);
+
+		refresh();
+	}
+
+	/**
+	 * Re-applies the search to the current history. Called after the history changes.
+	 */
+	void refresh()
+	{
+		Integer selected = list.getSelectedValue();
+		list.clearSelection();
+		String query = searchField.getText().trim();
+
+		if (query.isEmpty())
+		{
+			model.showAll(history.size());
+		}
+		else if (query.chars().allMatch(Character::isDigit) && query.length() <= 9)
+		{
+			model.showRows(history.findByAmount(Integer.parseInt(query)));
+		}
+		else
+		{
+			try
+			{
+				model.showRows(history.findByDate(LocalDate.parse(query), ZoneId.systemDefault()));
+			}
+			catch (DateTimeParseException e)
+			{
+				model.showRows(new int[0]);
+			}
+		}
+
+		countLabel.setText(model.getSize() + " of " + history.size() + " codes");
+
+		int index = selected != null ? model.indexOf(selected) : -1;
+		if (index >= 0)
+		{
+			list.setSelectedIndex(index);
+		}
+		updateRedeemedButton();
+	}
+
+	int getVisibleCount()
+	{
+		return model.getSize();
+	}
+
+	private void copySelected()
+	{
+		Integer row = list.getSelectedValue();
+		String code = row != null ? history.getCode(row) : null;
+		if (code != null && !RuneCCGPanel.copyToClipboard(code))
+		{
+			// Selectable, so the code can still be copied by hand
+			JTextField codeField = new JTextField(code);
+			codeField.setEditable(false);
+			JOptionPane.showMessageDialog(this,
+				new Object[]{"The clipboard is unavailable, copy the code from here:", codeField},
+				"Copy Code",
+				JOptionPane.WARNING_MESSAGE);
+		}
+	}
+
+	private void toggleSelectedRedeemed()
+	{
+		Integer row = list.getSelectedValue();
+		if (row != null)
+		{
+			redeemedCallback.accept(row, !history.isRedeemed(row));
+		}
+	}
+
+	private void updateRedeemedButton()
+	{
+		Integer row = list.getSelectedValue();
+		redeemedButton.setEnabled(row != null);
+		redeemedButton.setText(row != null && history.isRedeemed(row) ? "Mark Unredeemed" : "Mark Redeemed");
+	}
+
+	/**
+	 * Maps list indexes, newest first, onto history rows: either all of them, or the rows that
+	 * matched a search.
+	 */
+	private static final class RowModel extends AbstractListModel<Integer>
+	{
+		// Ascending history rows, or null when every row is shown
+		private int[] rows;
+		private int size;
+
+		void showAll(int count)
+		{
+			rows = null;
+			size = count;
+			fireContentsChanged(this, 0, Integer.MAX_VALUE);
+		}
+
+		void showRows(int[] matches)
+		{
+			rows = matches;
+			size = matches.length;
+			fireContentsChanged(this, 0, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * @return the list index of a history row, or -1 if it is not shown
+		 */
+		int indexOf(int row)
+		{
+			int position = rows != null ? Arrays.binarySearch(rows, row) : row;
+			return position >= 0 && position < size ? size - 1 - position : -1;
+		}
+
+		@Override
+		public int getSize()
+		{
+			return size;
+		}
+
+		@Override
+		public Integer getElementAt(int index)
+		{
+			int reversed = size - 1 - index;
+			return rows != null ? rows[reversed] : reversed;
+		}
+	}
+
+	/**
+	 * Renders rows with one reused set of components.
+	 */
+	private final class RowRenderer extends JPanel implements ListCellRenderer<Integer>
+	{
+		private final JLabel summaryLabel = new JLabel();
+		private final JLabel codeLabel = new JLabel();
+
+		RowRenderer()
+		{
+			setLayout(new BorderLayout());
+			setBorder(BorderFactory.createCompoundBorder(
+				BorderFactory.createMatteBorder(0, 0, 1, 0, ColorScheme.DARK_GRAY_COLOR),
+				new EmptyBorder(2, 5, 2, 5)));
+			summaryLabel.setFont(FontManager.getRunescapeSmallFont());
+			codeLabel.setFont(FontManager.getRunescapeSmallFont());
+			add(summaryLabel, BorderLayout.NORTH);
+			add(codeLabel, BorderLayout.SOUTH);
+		}
+
+		@Override
+		public Component getListCellRendererComponent(JList<? extends Integer> list, Integer row, int index,
+			boolean isSelected, boolean cellHasFocus)
+		{
+			if (row == PROTOTYPE_ROW)
+			{
+				summaryLabel.setText("2026-01-01 00:00 - 1000000 coins (redeemed)");
+				codeLabel.setText("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA");
+			}
+			else
+			{
+				boolean redeemed = history.isRedeemed(row);
+				String date = DATE_FORMAT.format(Instant.ofEpochMilli(history.getTimestamp(row)).atZone(ZoneId.systemDefault()));
+				summaryLabel.setText(date + " - " + history.getAmount(row) + " coins" + (redeemed ? " (redeemed)" : ""));
+				summaryLabel.setForeground(redeemed ? Color.GRAY : Color.YELLOW);
+				codeLabel.setText(history.getCode(row));
+				codeLabel.setForeground(redeemed ? Color.GRAY : Color.WHITE);
+			}
+
+			setBackground(isSelected ? ColorScheme.MEDIUM_GRAY_COLOR : ColorScheme.DARKER_GRAY_COLOR);
+			return this;
+		}
+	}
+}
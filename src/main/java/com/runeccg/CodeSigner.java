@@ -0,0 +1,267 @@
+package com.runeccg;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates signed cash-out codes.
+ * <p>
+ * A code is 36 bytes, Base64 encoded to 48 characters:
+ * nonce (8 bytes) + timestamp in epoch seconds (8 bytes) + amount (4 bytes)
+ * followed by the first 16 bytes of the HMAC-SHA256 of those 20 bytes.
+ * <p>
+ * The JCA lookups, key setup and SecureRandom seeding are done once, ideally by
+ * {@link #warmUp()} on a background thread, so generating a code on the EDT only
+ * costs the HMAC itself.
+ */
+@Slf4j
+@Singleton
+class CodeSigner
+{
+	static final int NONCE_LENGTH = 8;
+	static final int PAYLOAD_LENGTH = NONCE_LENGTH + Long.BYTES + Integer.BYTES;
+	static final int SIGNATURE_LENGTH = 16;
+	static final int CODE_LENGTH = PAYLOAD_LENGTH + SIGNATURE_LENGTH;
+	// Most codes a single cash-out can ask for
+	static final int MAX_BATCH_SIZE = 1000;
+
+	// Secret key for HMAC signing - KEEP THIS SECRET
+	// In production, this should match the key on your backend
+	static final String SECRET_KEY = "RuneCCG_Secret_Key_2026_Change_This_In_Production";
+	private static final String ALGORITHM = "HmacSHA256";
+
+	// Batches smaller than this are not worth handing to other threads
+	private static final int PARALLEL_BATCH_THRESHOLD = 32;
+
+	private SecureRandom random;
+	private Encoder encoder;
+
+	/**
+	 * Initializes the signer ahead of the first cash-out.
+	 */
+	synchronized void warmUp()
+	{
+		if (encoder != null)
+		{
+			return;
+		}
+
+		try
+		{
+			long start = System.nanoTime();
+			initialize();
+			// Run the full path once so the first real code does not pay for class loading
+			encoder.encode(1);
+			log.debug("Code signer ready in {}ms", (System.nanoTime() - start) / 1_000_000);
+		}
+		catch (GeneralSecurityException e)
+		{
+			log.error("Error initializing code signer", e);
+		}
+	}
+
+	/**
+	 * Generates a signed code for the given amount of Silver Coins.
+	 *
+	 * @return the Base64 encoded code, or null if it could not be signed
+	 */
+	synchronized String encode(int amount)
+	{
+		try
+		{
+			if (encoder == null)
+			{
+				initialize();
+			}
+
+			return encoder.encode(amount);
+		}
+		catch (GeneralSecurityException e)
+		{
+			log.error("Error encoding coins", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Generates {@code count} codes of {@code amount} Silver Coins each. Small batches are signed
+	 * by the warmed-up Mac like single codes, large ones are split into contiguous chunks signed
+	 * in parallel, each by its own Mac and buffers.
+	 *
+	 * @return the codes in generation order, or null if any of them could not be signed
+	 * @throws IllegalArgumentException if {@code count} is not between 1 and {@link #MAX_BATCH_SIZE}
+	 */
+	List<String> encodeBatch(int amount, int count)
+	{
+		if (count < 1 || count > MAX_BATCH_SIZE)
+		{
+			throw new IllegalArgumentException("Between 1 and " + MAX_BATCH_SIZE + " codes can be generated at once, not " + count);
+		}
+
+		if (count < PARALLEL_BATCH_THRESHOLD)
+		{
+			return encodeSequentially(amount, count);
+		}
+
+		final Encoder[] encoders;
+		try
+		{
+			encoders = createEncoders(Math.min(count / PARALLEL_BATCH_THRESHOLD, ForkJoinPool.getCommonPoolParallelism()));
+		}
+		catch (GeneralSecurityException e)
+		{
+			log.error("Error encoding coins", e);
+			return null;
+		}
+
+		final String[] codes = new String[count];
+
+		final int chunk = (count + encoders.length - 1) / encoders.length;
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(encoders.length);
+		for (int i = 0; i < encoders.length; i++)
+		{
+			final Encoder worker = encoders[i];
+			final int from = i * chunk;
+			final int to = Math.min(count, from + chunk);
+			futures.add(CompletableFuture.runAsync(() ->
+			{
+				for (int j = from; j < to; j++)
+				{
+					codes[j] = worker.encode(amount);
+				}
+			}));
+		}
+
+		try
+		{
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		}
+		catch (CompletionException e)
+		{
+			log.error("Error encoding coins", e.getCause());
+			return null;
+		}
+
+		return Collections.unmodifiableList(Arrays.asList(codes));
+	}
+
+	/**
+	 * Signs a batch with the shared encoder, which is cheaper than setting up a Mac for it.
+	 */
+	private synchronized List<String> encodeSequentially(int amount, int count)
+	{
+		final String[] codes = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			codes[i] = encode(amount);
+			if (codes[i] == null)
+			{
+				return null;
+			}
+		}
+		return Collections.unmodifiableList(Arrays.asList(codes));
+	}
+
+	private synchronized Encoder[] createEncoders(int count) throws GeneralSecurityException
+	{
+		if (encoder == null)
+		{
+			initialize();
+		}
+
+		Encoder[] encoders = new Encoder[count];
+		for (int i = 0; i < count; i++)
+		{
+			encoders[i] = new Encoder(encoder.copyMac(), random);
+		}
+		return encoders;
+	}
+
+	private void initialize() throws GeneralSecurityException
+	{
+		Mac hmac = Mac.getInstance(ALGORITHM);
+		hmac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+
+		SecureRandom secureRandom = new SecureRandom();
+		// Force seeding now rather than on the first code
+		secureRandom.nextBytes(new byte[NONCE_LENGTH]);
+
+		random = secureRandom;
+		encoder = new Encoder(hmac, secureRandom);
+	}
+
+	/**
+	 * A keyed Mac and the buffers to build codes with. Not thread safe, every thread signing
+	 * codes at the same time needs its own.
+	 */
+	private static final class Encoder
+	{
+		private final Mac mac;
+		private final SecureRandom random;
+		private final byte[] nonce = new byte[NONCE_LENGTH];
+		private final ByteBuffer code = ByteBuffer.allocate(CODE_LENGTH);
+		private final byte[] digest;
+
+		Encoder(Mac mac, SecureRandom random)
+		{
+			this.mac = mac;
+			this.random = random;
+			this.digest = new byte[mac.getMacLength()];
+		}
+
+		String encode(int amount)
+		{
+			random.nextBytes(nonce);
+			long timestamp = System.currentTimeMillis() / 1000;
+
+			byte[] bytes = code.array();
+			code.clear();
+			code.put(nonce);
+			code.putLong(timestamp);
+			code.putInt(amount);
+
+			try
+			{
+				mac.update(bytes, 0, PAYLOAD_LENGTH);
+				mac.doFinal(digest, 0);
+			}
+			catch (GeneralSecurityException e)
+			{
+				// The digest buffer is sized from the Mac itself, so this cannot happen
+				throw new IllegalStateException(e);
+			}
+			System.arraycopy(digest, 0, bytes, PAYLOAD_LENGTH, SIGNATURE_LENGTH);
+
+			return Base64.getEncoder().encodeToString(bytes);
+		}
+
+		Mac copyMac() throws GeneralSecurityException
+		{
+			try
+			{
+				// Cloning an initialized Mac skips the provider lookup and key setup
+				return (Mac) mac.clone();
+			}
+			catch (CloneNotSupportedException e)
+			{
+				Mac hmac = Mac.getInstance(ALGORITHM);
+				hmac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+				return hmac;
+			}
+		}
+	}
+}
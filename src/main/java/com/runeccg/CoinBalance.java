@@ -0,0 +1,105 @@
+package com.runeccg;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * XP progress and Silver Coin balance of one profile, updated without locks.
+ * <p>
+ * Both values are packed into a single {@link AtomicLong}, coins in the high half and XP in the
+ * low half, so every operation reads and replaces them together with one compare-and-set. An
+ * award on the client thread and a cash-out on the cash-out thread can then never overwrite
+ * each other's change, and a reader never sees XP from one update with coins from another.
+ */
+final class CoinBalance
+{
+	private final AtomicLong state;
+
+	CoinBalance(int currentXp, int totalCoins)
+	{
+		state = new AtomicLong(pack(currentXp, totalCoins));
+	}
+
+	/**
+	 * @return both values at one point in time, read them with {@link #xp(long)} and {@link #coins(long)}
+	 */
+	long snapshot()
+	{
+		return state.get();
+	}
+
+	/**
+	 * Adds gained XP, converting every full {@link CoinLedger#XP_PER_SILVER_COIN} into a coin.
+	 * The balance stops at {@link Integer#MAX_VALUE} coins, coins past it are not awarded.
+	 *
+	 * @return the number of coins awarded
+	 */
+	int award(int xpGained)
+	{
+		while (true)
+		{
+			long current = state.get();
+			long progressXp = (long) xp(current) + xpGained;
+			int coins = coins(current);
+			int coinsEarned = (int) Math.min(progressXp / CoinLedger.XP_PER_SILVER_COIN, (long) Integer.MAX_VALUE - coins);
+			long next = pack((int) (progressXp % CoinLedger.XP_PER_SILVER_COIN), coins + coinsEarned);
+			if (state.compareAndSet(current, next))
+			{
+				return coinsEarned;
+			}
+		}
+	}
+
+	/**
+	 * Takes coins from the balance if there are enough of them.
+	 *
+	 * @return true if the coins were taken
+	 */
+	boolean tryDebit(int amount)
+	{
+		while (true)
+		{
+			long current = state.get();
+			int coins = coins(current);
+			if (amount > coins)
+			{
+				return false;
+			}
+
+			if (state.compareAndSet(current, pack(xp(current), coins - amount)))
+			{
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives coins back, up to a balance of {@link Integer#MAX_VALUE}.
+	 */
+	void credit(int amount)
+	{
+		while (true)
+		{
+			long current = state.get();
+			int coins = (int) Math.min((long) coins(current) + amount, Integer.MAX_VALUE);
+			if (state.compareAndSet(current, pack(xp(current), coins)))
+			{
+				return;
+			}
+		}
+	}
+
+	static int xp(long snapshot)
+	{
+		return (int) snapshot;
+	}
+
+	static int coins(long snapshot)
+	{
+		return (int) (snapshot >>> 32);
+	}
+
+	static long pack(int currentXp, int totalCoins)
+	{
+		return ((long) totalCoins << 32) | (currentXp & 0xFFFFFFFFL);
+	}
+}
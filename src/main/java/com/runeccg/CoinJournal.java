@@ -0,0 +1,659 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+/**
+ * Append-only binary log of a profile's XP awards and issued cash-out codes, and of which
+ * codes the player has marked as redeemed, kept in {@code .runelite/runeccg/<profile>.journal}.
+ * <p>
+ * Every record carries the balance after it and a CRC32, so the latest balance and the full
+ * history of codes can be rebuilt on startup. A record torn by a crash fails its CRC and is cut
+ * off together with anything after it.
+ * <p>
+ * Appends only copy the record into a direct buffer. The buffer is written out and forced to
+ * disk by {@link #sync()}, which the ledger calls on its regular flush and right after recording
+ * a cash-out, so an issued code is on disk before it is shown. Journals over {@value #COMPACT_THRESHOLD}
+ * bytes are compacted when opened by merging each day's awards into one record, but only if that
+ * would shrink them by at least a quarter, so a journal made mostly of cash-outs is not rewritten
+ * on every open for nothing.
+ * <p>
+ * A failed write cuts the journal back to where the last successful sync left it, so a record
+ * that was reported as not written, like a cash-out whose code is never shown, cannot turn up on
+ * the next open. It then closes the journal, and records appended afterwards are dropped until
+ * the next {@link #open}. {@link #sync()} and {@link #isWritable()} report it, so that the
+ * ledger can refuse cash-outs that would not be recorded.
+ */
+@Slf4j
+@Singleton
+class CoinJournal
+{
+	private static final int MAGIC = 0x52434A31; // "RCJ1"
+	private static final int HEADER_LENGTH = Integer.BYTES;
+	// type + timestamp + currentXp + totalCoins + value
+	private static final int BASE_LENGTH = 1 + Long.BYTES + 3 * Integer.BYTES;
+	private static final int CRC_LENGTH = Integer.BYTES;
+	private static final int MAX_RECORD_LENGTH = BASE_LENGTH + CodeSigner.CODE_LENGTH + CRC_LENGTH;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long COMPACT_THRESHOLD = 1 << 20;
+	// Compact only if merging awards would remove at least 1/COMPACT_MIN_SAVING of the journal
+	private static final int COMPACT_MIN_SAVING = 4;
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+	private final File directory;
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_LENGTH);
+	private final CRC32 crc = new CRC32();
+
+	private String profileKey;
+	private Path path;
+	private FileChannel channel;
+	private boolean unsynced;
+	// End of the records known to be on disk, everything after it is cut off if a write fails
+	private long syncedPosition;
+
+	@Inject
+	CoinJournal()
+	{
+		this(new File(RuneLite.RUNELITE_DIR, "runeccg"));
+	}
+
+	CoinJournal(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens the journal of a profile for appending, closing the previous one.
+	 *
+	 * @return the last record of the journal, or null if it is new or could not be opened
+	 */
+	synchronized JournalRecord open(String profileKey)
+	{
+		return open(profileKey, r -> {});
+	}
+
+	/**
+	 * Opens the journal of a profile for appending, closing the previous one, and visits every
+	 * intact record on the way, so the whole journal is only read once.
+	 *
+	 * @param visitor visits the records from oldest to newest, as they were before any compaction
+	 * @return the last record of the journal, or null if it is new or could not be opened
+	 */
+	synchronized JournalRecord open(String profileKey, Consumer<JournalRecord> visitor)
+	{
+		close();
+
+		this.profileKey = profileKey;
+		path = journalPath(directory, profileKey);
+		try
+		{
+			Files.createDirectories(path.getParent());
+			channel = openChannel(path);
+
+			if (channel.size() == 0)
+			{
+				writeHeader(channel);
+				syncedPosition = HEADER_LENGTH;
+				return null;
+			}
+
+			JournalRecord last = new JournalRecord();
+			long[] mergeable = new long[1];
+			long end = read(channel, r ->
+			{
+				if (r.type == JournalRecord.AWARD && last.type == JournalRecord.AWARD
+					&& r.timestamp / MILLIS_PER_DAY == last.timestamp / MILLIS_PER_DAY)
+				{
+					mergeable[0] += recordLength(JournalRecord.AWARD);
+				}
+				copy(r, last);
+				visitor.accept(r);
+			});
+			if (end < 0)
+			{
+				log.warn("Journal {} is not readable, starting a new one", path);
+				channel.close();
+				Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+				channel = openChannel(path);
+				writeHeader(channel);
+				syncedPosition = HEADER_LENGTH;
+				return null;
+			}
+
+			if (end < channel.size())
+			{
+				log.warn("Discarding {} bytes of incomplete records from {}", channel.size() - end, path);
+				channel.truncate(end);
+			}
+
+			if (end > COMPACT_THRESHOLD && mergeable[0] >= end / COMPACT_MIN_SAVING)
+			{
+				compact();
+			}
+
+			syncedPosition = channel.size();
+			channel.position(syncedPosition);
+			return end > HEADER_LENGTH ? last : null;
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to open journal {}", path, e);
+			closeQuietly();
+			return null;
+		}
+	}
+
+	synchronized void appendSnapshot(int currentXp, int totalCoins)
+	{
+		append(JournalRecord.SNAPSHOT, currentXp, totalCoins, 0, null);
+	}
+
+	synchronized void appendAward(int xpGained, int currentXp, int totalCoins)
+	{
+		append(JournalRecord.AWARD, currentXp, totalCoins, xpGained, null);
+	}
+
+	synchronized void appendCashOut(byte[] code, int amount, int currentXp, int totalCoins)
+	{
+		append(JournalRecord.CASH_OUT, currentXp, totalCoins, amount, code);
+	}
+
+	synchronized void appendRedeemed(byte[] code, boolean redeemed, int currentXp, int totalCoins)
+	{
+		append(JournalRecord.REDEEMED, currentXp, totalCoins, redeemed ? 1 : 0, code);
+	}
+
+	/**
+	 * Writes out buffered records and forces them to disk.
+	 *
+	 * @return true if every record appended since the journal was opened is on disk, false if
+	 * no journal is open or a write failed
+	 */
+	synchronized boolean sync()
+	{
+		if (channel == null)
+		{
+			return false;
+		}
+		if (!unsynced)
+		{
+			return true;
+		}
+
+		try
+		{
+			drain();
+			channel.force(false);
+			unsynced = false;
+			syncedPosition = channel.position();
+			return true;
+		}
+		catch (IOException e)
+		{
+			failed(e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return false if no journal is open, or it was closed by a failed write and new records are dropped
+	 */
+	synchronized boolean isWritable()
+	{
+		return channel != null;
+	}
+
+	/**
+	 * Appends records to another profile's journal than the open one and forces them to disk,
+	 * then opens the journal that was open again, for changes that finish after the profile they
+	 * belong to was switched away from.
+	 *
+	 * @param appends appends the records while the profile's journal is open, given its last
+	 * record or null if it has none
+	 * @return true if the records are on disk
+	 */
+	synchronized boolean appendTo(String otherProfileKey, Consumer<JournalRecord> appends)
+	{
+		String openProfileKey = profileKey;
+		appends.accept(open(otherProfileKey));
+		boolean written = sync();
+
+		if (openProfileKey != null)
+		{
+			open(openProfileKey);
+		}
+		else
+		{
+			close();
+		}
+		return written;
+	}
+
+	synchronized void close()
+	{
+		profileKey = null;
+		if (channel == null)
+		{
+			return;
+		}
+
+		sync();
+		closeQuietly();
+	}
+
+	/**
+	 * Visits every intact record of a profile's journal, from oldest to newest.
+	 *
+	 * @return false if the profile has no readable journal
+	 */
+	boolean readAll(String profileKey, Consumer<JournalRecord> visitor) throws IOException
+	{
+		Path journal = journalPath(directory, profileKey);
+		synchronized (this)
+		{
+			// Make sure everything appended so far is visible to the reader
+			if (journal.equals(path))
+			{
+				sync();
+			}
+		}
+
+		if (!Files.exists(journal))
+		{
+			return false;
+		}
+
+		try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ))
+		{
+			return read(in, visitor) >= 0;
+		}
+	}
+
+	/**
+	 * @return the length and modification time of a profile's journal, which change whenever it
+	 * is written to, or null if it has none
+	 */
+	Stamp stamp(String profileKey)
+	{
+		Path journal = journalPath(directory, profileKey);
+		synchronized (this)
+		{
+			// Records still in the write buffer are not in the file's length yet
+			if (journal.equals(path))
+			{
+				sync();
+			}
+		}
+
+		try
+		{
+			BasicFileAttributes attributes = Files.readAttributes(journal, BasicFileAttributes.class);
+			return new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	private void append(byte type, int currentXp, int totalCoins, int value, byte[] code)
+	{
+		if (channel == null)
+		{
+			return;
+		}
+
+		record.clear();
+		record.put(type);
+		record.putLong(System.currentTimeMillis());
+		record.putInt(currentXp);
+		record.putInt(totalCoins);
+		record.putInt(value);
+		if (code != null)
+		{
+			record.put(code);
+		}
+
+		crc.reset();
+		crc.update(record.array(), 0, record.position());
+		record.putInt((int) crc.getValue());
+		record.flip();
+
+		try
+		{
+			if (writeBuffer.remaining() < record.remaining())
+			{
+				drain();
+			}
+			writeBuffer.put(record);
+			unsynced = true;
+		}
+		catch (IOException e)
+		{
+			failed(e);
+		}
+	}
+
+	/**
+	 * Cuts off whatever part of the records since the last sync reached the file before a write
+	 * failed, then closes the journal.
+	 */
+	private void failed(IOException e)
+	{
+		log.error("Failed to write journal {}", path, e);
+		try
+		{
+			channel.truncate(syncedPosition);
+			channel.force(false);
+		}
+		catch (IOException truncateFailure)
+		{
+			log.error("Failed to discard unsynced records from journal {}", path, truncateFailure);
+		}
+		closeQuietly();
+	}
+
+	private void drain() throws IOException
+	{
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining())
+		{
+			channel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * Rewrites the journal with each day's awards merged into a single record, keeping
+	 * snapshots and cash-outs as they are.
+	 */
+	private void compact() throws IOException
+	{
+		Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+		long before = channel.size();
+
+		try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			writeHeader(out);
+
+			JournalRecord pending = new JournalRecord();
+			ByteBuffer outBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+			IOException[] failure = new IOException[1];
+			read(channel, r ->
+			{
+				try
+				{
+					if (pending.type == JournalRecord.AWARD)
+					{
+						if (r.type == JournalRecord.AWARD && r.timestamp / MILLIS_PER_DAY == pending.timestamp / MILLIS_PER_DAY)
+						{
+							int xpGained = pending.value + r.value;
+							copy(r, pending);
+							pending.value = xpGained;
+							return;
+						}
+						write(out, outBuffer, pending);
+						pending.type = 0;
+					}
+
+					if (r.type == JournalRecord.AWARD)
+					{
+						copy(r, pending);
+					}
+					else
+					{
+						write(out, outBuffer, r);
+					}
+				}
+				catch (IOException e)
+				{
+					failure[0] = e;
+				}
+			});
+
+			if (pending.type == JournalRecord.AWARD)
+			{
+				write(out, outBuffer, pending);
+			}
+			if (failure[0] != null)
+			{
+				throw failure[0];
+			}
+
+			outBuffer.flip();
+			while (outBuffer.hasRemaining())
+			{
+				out.write(outBuffer);
+			}
+			out.force(false);
+		}
+
+		channel.close();
+		Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = openChannel(path);
+		log.debug("Compacted journal {} from {} to {} bytes", path, before, channel.size());
+	}
+
+	private void write(FileChannel out, ByteBuffer outBuffer, JournalRecord r) throws IOException
+	{
+		if (outBuffer.remaining() < MAX_RECORD_LENGTH)
+		{
+			outBuffer.flip();
+			while (outBuffer.hasRemaining())
+			{
+				out.write(outBuffer);
+			}
+			outBuffer.clear();
+		}
+
+		int start = outBuffer.position();
+		outBuffer.put(r.type);
+		outBuffer.putLong(r.timestamp);
+		outBuffer.putInt(r.currentXp);
+		outBuffer.putInt(r.totalCoins);
+		outBuffer.putInt(r.value);
+		if (hasCode(r.type))
+		{
+			outBuffer.put(r.code);
+		}
+
+		crc.reset();
+		crc.update(outBuffer.array(), start, outBuffer.position() - start);
+		outBuffer.putInt((int) crc.getValue());
+	}
+
+	private void closeQuietly()
+	{
+		writeBuffer.clear();
+		unsynced = false;
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to close journal {}", path, e);
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Opens a journal file for appending, creating it if needed. Tests override it to make
+	 * writes fail.
+	 */
+	FileChannel openChannel(Path file) throws IOException
+	{
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private static void writeHeader(FileChannel out) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(MAGIC);
+		header.flip();
+		out.write(header);
+		out.force(false);
+	}
+
+	/**
+	 * Reads records from the start of a journal until its end or the first damaged record.
+	 *
+	 * @return the position just after the last intact record, or -1 if the header is wrong
+	 */
+	private static long read(FileChannel in, Consumer<JournalRecord> visitor) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long position = 0;
+		in.position(0);
+
+		while (buffer.position() < HEADER_LENGTH && in.read(buffer) > 0)
+		{
+			// Keep reading until the header is complete
+		}
+		buffer.flip();
+		if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC)
+		{
+			return -1;
+		}
+		position += HEADER_LENGTH;
+
+		CRC32 checksum = new CRC32();
+		JournalRecord r = new JournalRecord();
+		while (true)
+		{
+			if (buffer.remaining() < MAX_RECORD_LENGTH)
+			{
+				buffer.compact();
+				int read = 0;
+				while (buffer.hasRemaining() && (read = in.read(buffer)) > 0)
+				{
+					// Fill as much of the buffer as possible
+				}
+				buffer.flip();
+				if (read < 0 && !buffer.hasRemaining())
+				{
+					return position;
+				}
+			}
+
+			if (!buffer.hasRemaining())
+			{
+				return position;
+			}
+
+			int start = buffer.position();
+			byte type = buffer.get(start);
+			int length = recordLength(type);
+			if (length < 0 || buffer.remaining() < length)
+			{
+				return position;
+			}
+
+			checksum.reset();
+			checksum.update(buffer.array(), buffer.arrayOffset() + start, length - CRC_LENGTH);
+			if ((int) checksum.getValue() != buffer.getInt(start + length - CRC_LENGTH))
+			{
+				return position;
+			}
+
+			r.type = buffer.get();
+			r.timestamp = buffer.getLong();
+			r.currentXp = buffer.getInt();
+			r.totalCoins = buffer.getInt();
+			r.value = buffer.getInt();
+			if (hasCode(type))
+			{
+				buffer.get(r.code);
+			}
+			buffer.getInt();
+
+			visitor.accept(r);
+			position += length;
+		}
+	}
+
+	private static int recordLength(byte type)
+	{
+		switch (type)
+		{
+			case JournalRecord.SNAPSHOT:
+			case JournalRecord.AWARD:
+				return BASE_LENGTH + CRC_LENGTH;
+			case JournalRecord.CASH_OUT:
+			case JournalRecord.REDEEMED:
+				return BASE_LENGTH + CodeSigner.CODE_LENGTH + CRC_LENGTH;
+			default:
+				return -1;
+		}
+	}
+
+	private static boolean hasCode(byte type)
+	{
+		return type == JournalRecord.CASH_OUT || type == JournalRecord.REDEEMED;
+	}
+
+	private static void copy(JournalRecord from, JournalRecord to)
+	{
+		to.type = from.type;
+		to.timestamp = from.timestamp;
+		to.currentXp = from.currentXp;
+		to.totalCoins = from.totalCoins;
+		to.value = from.value;
+		System.arraycopy(from.code, 0, to.code, 0, from.code.length);
+	}
+
+	private static Path journalPath(File directory, String profileKey)
+	{
+		return directory.toPath().resolve(profileKey.replaceAll("[^A-Za-z0-9._-]", "_") + ".journal");
+	}
+
+	/**
+	 * The state of a journal file at one point in time, see {@link #stamp(String)}.
+	 */
+	static final class Stamp
+	{
+		private final long length;
+		private final long lastModified;
+
+		Stamp(long length, long lastModified)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Stamp))
+			{
+				return false;
+			}
+			Stamp other = (Stamp) o;
+			return length == other.length && lastModified == other.lastModified;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Long.hashCode(length) * 31 + Long.hashCode(lastModified);
+		}
+	}
+}
@@ -0,0 +1,935 @@
+package com.runeccg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.config.RuneScapeProfile;
+
+/**
+ * Authoritative in-memory copy of a character's XP progress and Silver Coin balance.
+ * <p>
+ * The balance is a {@link CoinBalance}, so XP awards on the client thread and cash-outs on the
+ * cash-out thread update it with compare-and-set instead of taking turns on a lock. A cash-out
+ * first {@link #reserve reserves} its coins, journaling the reduced balance, then either
+ * {@link Reservation#commit commits} them with the issued codes or {@link Reservation#rollback rolls}
+ * them back. Loading, unloading and flushing a profile are rare and still synchronized.
+ * <p>
+ * Values are read from the RS profile config once per profile and kept here afterwards,
+ * so awarding XP never touches config storage. They are saved as a single {@link LedgerRecord},
+ * written back in the background a few seconds after a coin is earned or spent, and whenever
+ * {@link #flush()} is called. XP that does not complete a coin is only journaled until then, as
+ * every config write makes RuneLite sync the whole profile. The journal is forced to disk on the
+ * same delay after such XP, so a crash loses at most the last few seconds of it.
+ * <p>
+ * Every change is also appended to the profile's {@link CoinJournal}, under the journal's lock.
+ * Each record holds the balance read inside that lock, so the last record always includes every
+ * change made before it, whatever order racing threads append in. If the journal is ahead of
+ * config when a profile is loaded, for example after the client was killed before a flush, the
+ * journal wins.
+ * <p>
+ * The ledger also keeps the profile's XP baseline, the experience of every skill that gains have
+ * been counted up to, and saves it with the balance. The plugin updates the baseline before awarding
+ * the XP measured from it, so a saved baseline is never older than the saved balance. It can be
+ * newer, which at worst loses a tick of XP, but never awards the same XP twice.
+ * <p>
+ * Profiles switched away from are kept in a {@link ProfileCache}, together with their code
+ * history, and the cache is {@link #prefetch() prefetched} on the login screen. Loading a cached
+ * profile skips config and only checks its balance against the last record of its journal,
+ * so switching between accounts shows the right numbers straight away.
+ */
+@Slf4j
+@Singleton
+class CoinLedger
+{
+	static final int XP_PER_SILVER_COIN = 1000;
+
+	private static final String CONFIG_GROUP = "runeccg";
+	private static final String CONFIG_KEY_LEDGER = "ledger";
+	// Written by older versions, one value each, and migrated to CONFIG_KEY_LEDGER on load
+	private static final String LEGACY_KEY_CURRENT_XP = "currentXp";
+	private static final String LEGACY_KEY_TOTAL_COINS = "totalCoins";
+	private static final String LEGACY_KEY_SKILL_XP = "skillXp";
+	private static final long FLUSH_DELAY_SECONDS = 5;
+	// Daily caps reset at midnight UTC, the same days the journal merges awards by
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final int CACHED_PROFILES = 8;
+
+	private final ConfigManager configManager;
+	private final ScheduledExecutorService executor;
+	private final CoinJournal journal;
+	private final PluginMetrics metrics;
+	private final CodeHistory history = new CodeHistory();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final AtomicBoolean syncScheduled = new AtomicBoolean();
+	private final ProfileCache<CachedProfile> cache = new ProfileCache<>(CACHED_PROFILES);
+
+	// Null until the first login. Only replaced while holding both this and the journal's lock.
+	private volatile Account account;
+	// 0 for no cap
+	private volatile int dailyCoinCap;
+
+	@Inject
+	CoinLedger(ConfigManager configManager, ScheduledExecutorService executor, CoinJournal journal, PluginMetrics metrics)
+	{
+		this.configManager = configManager;
+		this.executor = executor;
+		this.journal = journal;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Loads the values for the current RS profile. Does nothing if that profile is already loaded,
+	 * otherwise writes back the previous profile before switching. Reads the profile's whole
+	 * journal, so it runs on the plugin's ledger thread rather than the client thread or the EDT.
+	 */
+	synchronized void load()
+	{
+		String key = configManager.getRSProfileKey();
+		Account previous = account;
+		if (key == null || (previous != null && key.equals(previous.key)))
+		{
+			return;
+		}
+
+		flush();
+		CachedProfile cached;
+		LedgerRecord saved = null;
+		boolean migrated = false;
+		boolean restored = false;
+
+		synchronized (journal)
+		{
+			// Under the journal's lock, as a cash-out committed to a profile after it was switched away from drops its entry
+			cached = cache.remove(key);
+			if (previous != null)
+			{
+				// Under the journal's lock, so no cash-out can add a code to the history after it is copied
+				CodeHistory codes = new CodeHistory();
+				history.copyTo(codes);
+				cache.put(previous.key, new CachedProfile(previous, codes, journal.stamp(previous.key)));
+			}
+
+			// The journal is read once, for its last record, today's awards and the code history
+			JournalScan scan = new JournalScan(new CodeHistory());
+			JournalRecord last = journal.open(key, scan);
+			if (cached != null && cached.isCurrent(last))
+			{
+				// Everything the journal would give is already in the cached copy
+				account = cached.account;
+				cached.history.copyTo(history);
+			}
+			else
+			{
+				cached = null;
+				saved = readRecord(key);
+				if (saved == null)
+				{
+					saved = readLegacyRecord(key);
+					migrated = saved != null;
+				}
+				int currentXp = saved != null ? saved.getCurrentXp() : 0;
+				int totalCoins = saved != null ? saved.getTotalCoins() : 0;
+
+				if (last == null)
+				{
+					journal.appendSnapshot(currentXp, totalCoins);
+				}
+				else if (last.getCurrentXp() != currentXp || last.getTotalCoins() != totalCoins)
+				{
+					log.info("Restoring ledger for profile {} from journal: {} xp, {} coins (config had {} xp, {} coins)",
+						key, last.getCurrentXp(), last.getTotalCoins(), currentXp, totalCoins);
+					currentXp = last.getCurrentXp();
+					totalCoins = last.getTotalCoins();
+					restored = true;
+				}
+				// A baseline saved before the journaled awards would count them again
+				int[] skillXp = restored || saved == null ? null : saved.getSkillXp();
+				Account loaded = new Account(key, new CoinBalance(currentXp, totalCoins), skillXp);
+				loaded.day = scan.today;
+				loaded.xpToday = scan.xpToday;
+				scan.codes.copyTo(history);
+				account = loaded;
+			}
+		}
+
+		if (cached != null)
+		{
+			history.fireChanged();
+			metrics.increment(PluginMetrics.Counter.PROFILE_CACHE_HITS);
+			log.debug("Loaded ledger for profile {} from cache", key);
+			return;
+		}
+
+		if (migrated)
+		{
+			// Save the single record right away, then drop the old keys it replaces
+			account.dirty.set(true);
+			write(account);
+			configManager.unsetConfiguration(CONFIG_GROUP, key, LEGACY_KEY_CURRENT_XP);
+			configManager.unsetConfiguration(CONFIG_GROUP, key, LEGACY_KEY_TOTAL_COINS);
+			configManager.unsetConfiguration(CONFIG_GROUP, key, LEGACY_KEY_SKILL_XP);
+			log.info("Migrated ledger for profile {} to a single config record", key);
+		}
+		else if (restored)
+		{
+			markDirty(account);
+		}
+		history.fireChanged();
+		log.debug("Loaded ledger for profile {}: {} xp, {} coins", key, getCurrentXp(), getTotalCoins());
+	}
+
+	/**
+	 * @return the codes issued to the loaded profile
+	 */
+	CodeHistory getHistory()
+	{
+		return history;
+	}
+
+	boolean isLoaded()
+	{
+		return account != null;
+	}
+
+	/**
+	 * @return the key of the loaded RS profile, or null if none is loaded
+	 */
+	String getProfileKey()
+	{
+		Account current = account;
+		return current != null ? current.key : null;
+	}
+
+	/**
+	 * @return a copy of the loaded profile's XP baseline, indexed by skill ordinal, or null if it
+	 * has none saved
+	 */
+	int[] getSkillBaseline()
+	{
+		Account current = account;
+		int[] skillXp = current != null ? current.skillXp : null;
+		return skillXp != null ? skillXp.clone() : null;
+	}
+
+	/**
+	 * Replaces the loaded profile's XP baseline, to be saved with its balance. Call it before
+	 * awarding the XP measured from the new baseline.
+	 *
+	 * @param skillXp indexed by skill ordinal, owned by the ledger afterwards
+	 */
+	void updateSkillBaseline(int[] skillXp)
+	{
+		Account current = account;
+		if (current == null)
+		{
+			return;
+		}
+
+		current.skillXp = skillXp;
+		// Saved with the balance on the next write, it is not worth a write of its own
+		current.dirty.set(true);
+	}
+
+	/**
+	 * @return the XP progress and coin balance at one point in time, read them with
+	 * {@link CoinBalance#xp(long)} and {@link CoinBalance#coins(long)}
+	 */
+	long snapshot()
+	{
+		Account current = account;
+		return current != null ? current.balance.snapshot() : 0;
+	}
+
+	int getCurrentXp()
+	{
+		return CoinBalance.xp(snapshot());
+	}
+
+	int getTotalCoins()
+	{
+		return CoinBalance.coins(snapshot());
+	}
+
+	/**
+	 * Limits how many Silver Coins' worth of XP can be awarded per UTC day, counting what was
+	 * already awarded today.
+	 *
+	 * @param coins the cap, 0 for none
+	 */
+	void setDailyCoinCap(int coins)
+	{
+		dailyCoinCap = Math.max(0, coins);
+	}
+
+	/**
+	 * Adds gained XP to the progress towards the next coin, converting every full
+	 * {@link #XP_PER_SILVER_COIN} into a Silver Coin. XP past the daily cap is dropped.
+	 * Must be called on the client thread.
+	 *
+	 * @return the number of coins awarded
+	 */
+	int award(int xpGained)
+	{
+		Account current = account;
+		if (current == null || xpGained <= 0)
+		{
+			return 0;
+		}
+
+		xpGained = current.takeDailyAllowance(xpGained, dailyCoinCap, System.currentTimeMillis());
+		if (xpGained <= 0)
+		{
+			return 0;
+		}
+
+		int coinsEarned = current.balance.award(xpGained);
+		synchronized (journal)
+		{
+			if (current == account)
+			{
+				long balance = current.balance.snapshot();
+				journal.appendAward(xpGained, CoinBalance.xp(balance), CoinBalance.coins(balance));
+			}
+		}
+
+		if (coinsEarned > 0)
+		{
+			markDirty(current);
+		}
+		else
+		{
+			// Config can wait for the next coin or flush, the journal only has to reach the disk
+			current.dirty.set(true);
+			scheduleSync();
+		}
+		return coinsEarned;
+	}
+
+	/**
+	 * Takes coins out of the balance for a cash-out, if there are enough of them.
+	 *
+	 * @return the reservation to commit or roll back once the cash-out is done, or null if
+	 * no profile is loaded or the balance is too low
+	 */
+	Reservation reserve(int amount)
+	{
+		Account current;
+		synchronized (journal)
+		{
+			current = account;
+			if (current == null || amount <= 0 || !current.balance.tryDebit(amount))
+			{
+				return null;
+			}
+
+			// Journaled right away, so that a copy of the profile read back from disk before the
+			// cash-out is settled has the coins taken out too
+			long balance = current.balance.snapshot();
+			journal.appendSnapshot(CoinBalance.xp(balance), CoinBalance.coins(balance));
+		}
+
+		markDirty(current);
+		return new Reservation(current.key, amount);
+	}
+
+	/**
+	 * Marks a code in the history as redeemed on the website, or back as unredeemed.
+	 */
+	void setRedeemed(int row, boolean redeemed)
+	{
+		byte[] code = history.getCodeBytes(row);
+		if (code == null)
+		{
+			return;
+		}
+
+		synchronized (journal)
+		{
+			Account current = account;
+			if (current == null)
+			{
+				return;
+			}
+
+			long balance = current.balance.snapshot();
+			journal.appendRedeemed(code, redeemed, CoinBalance.xp(balance), CoinBalance.coins(balance));
+			history.setRedeemed(code, redeemed);
+		}
+		history.fireChanged();
+	}
+
+	/**
+	 * Writes any pending changes to the RS profile config of the profile they belong to.
+	 */
+	synchronized void flush()
+	{
+		flushScheduled.set(false);
+		journal.sync();
+
+		Account current = account;
+		if (current != null)
+		{
+			write(current);
+		}
+	}
+
+	/**
+	 * Flushes and forgets the loaded profile and every cached one, so the next {@link #load()} reads it again.
+	 */
+	synchronized void unload()
+	{
+		flush();
+		synchronized (journal)
+		{
+			journal.close();
+			account = null;
+		}
+		history.clear();
+		cache.clear();
+	}
+
+	/**
+	 * Reads the RS profiles on this client into the cache in the background, up to its capacity,
+	 * so whichever account logs in next can be shown without reading config or its journal first.
+	 * Profiles without a saved record, or whose journal does not agree with it, are left for
+	 * {@link #load()} to sort out. Profiles already cached are only read again if their journal's
+	 * length or modification time changed since.
+	 */
+	void prefetch()
+	{
+		executor.execute(() ->
+		{
+			List<RuneScapeProfile> profiles = configManager.getRSProfiles();
+			if (profiles == null)
+			{
+				return;
+			}
+
+			for (RuneScapeProfile profile : profiles)
+			{
+				String key = profile.getKey();
+				if (key.equals(getProfileKey()))
+				{
+					continue;
+				}
+
+				CachedProfile current = cache.get(key);
+				CoinJournal.Stamp stamp = journal.stamp(key);
+				if (current != null ? Objects.equals(current.journalStamp, stamp) : cache.size() >= CACHED_PROFILES)
+				{
+					continue;
+				}
+
+				CachedProfile cached = stamp != null ? readProfile(key, stamp) : null;
+				synchronized (journal)
+				{
+					// Loaded or written to in the meantime, what was read is already out of date
+					if (key.equals(getProfileKey()) || !Objects.equals(stamp, journal.stamp(key)))
+					{
+						continue;
+					}
+
+					if (cached != null)
+					{
+						cache.put(key, cached);
+					}
+					else if (current != null)
+					{
+						cache.remove(key);
+					}
+				}
+			}
+		});
+	}
+
+	private synchronized void write(Account target)
+	{
+		if (!target.dirty.getAndSet(false))
+		{
+			return;
+		}
+
+		// Read the baseline first, it is always updated before the balance
+		int[] skillXp = target.skillXp;
+		long balance = target.balance.snapshot();
+		LedgerRecord record = new LedgerRecord(CoinBalance.xp(balance), CoinBalance.coins(balance), skillXp);
+		configManager.setConfiguration(CONFIG_GROUP, target.key, CONFIG_KEY_LEDGER, record.encode());
+		metrics.increment(PluginMetrics.Counter.CONFIG_WRITES);
+	}
+
+	/**
+	 * @return the profile's saved record, or null if it has none or it cannot be read, in which
+	 * case the journal is left to restore the balance
+	 */
+	private LedgerRecord readRecord(String key)
+	{
+		String encoded = configManager.getConfiguration(CONFIG_GROUP, key, CONFIG_KEY_LEDGER, String.class);
+		metrics.increment(PluginMetrics.Counter.CONFIG_READS);
+		if (encoded == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return LedgerRecord.decode(encoded);
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.warn("Ignoring unreadable ledger record for profile {}", key, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the values saved under the keys used before {@link LedgerRecord}, or null if there are none
+	 */
+	private LedgerRecord readLegacyRecord(String key)
+	{
+		Integer currentXp = configManager.getConfiguration(CONFIG_GROUP, key, LEGACY_KEY_CURRENT_XP, int.class);
+		Integer totalCoins = configManager.getConfiguration(CONFIG_GROUP, key, LEGACY_KEY_TOTAL_COINS, int.class);
+		String skillXp = configManager.getConfiguration(CONFIG_GROUP, key, LEGACY_KEY_SKILL_XP, String.class);
+		metrics.add(PluginMetrics.Counter.CONFIG_READS, 3);
+		if (currentXp == null && totalCoins == null && skillXp == null)
+		{
+			return null;
+		}
+
+		return new LedgerRecord(currentXp != null ? currentXp : 0, totalCoins != null ? totalCoins : 0,
+			decodeLegacySkillXp(key, skillXp));
+	}
+
+	private static int[] decodeLegacySkillXp(String key, String encoded)
+	{
+		if (encoded == null || encoded.isEmpty())
+		{
+			return null;
+		}
+
+		try
+		{
+			String[] values = encoded.split(",");
+			int[] skillXp = new int[values.length];
+			for (int i = 0; i < values.length; i++)
+			{
+				skillXp[i] = Integer.parseInt(values[i]);
+			}
+			return skillXp;
+		}
+		catch (NumberFormatException e)
+		{
+			log.warn("Ignoring unreadable XP baseline for profile {}", key, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param stamp the profile's journal as it was before reading it
+	 * @return a profile's state read from config and its journal without opening it, or null if
+	 * it cannot be used as is
+	 */
+	private CachedProfile readProfile(String key, CoinJournal.Stamp stamp)
+	{
+		LedgerRecord saved = readRecord(key);
+		if (saved == null)
+		{
+			return null;
+		}
+
+		CodeHistory codes = new CodeHistory();
+		JournalScan scan = new JournalScan(codes);
+		try
+		{
+			if (!journal.readAll(key, scan) || scan.empty
+				|| scan.currentXp != saved.getCurrentXp() || scan.totalCoins != saved.getTotalCoins())
+			{
+				return null;
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to prefetch profile {}", key, e);
+			return null;
+		}
+
+		Account prefetched = new Account(key, new CoinBalance(saved.getCurrentXp(), saved.getTotalCoins()), saved.getSkillXp());
+		prefetched.day = scan.today;
+		prefetched.xpToday = scan.xpToday;
+		return new CachedProfile(prefetched, codes, stamp);
+	}
+
+	private void markDirty(Account target)
+	{
+		target.dirty.set(true);
+		if (flushScheduled.compareAndSet(false, true))
+		{
+			executor.schedule(this::flush, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Forces the journal to disk a few seconds from now, without writing config.
+	 */
+	private void scheduleSync()
+	{
+		// A pending flush syncs the journal anyway
+		if (!flushScheduled.get() && syncScheduled.compareAndSet(false, true))
+		{
+			executor.schedule(() ->
+			{
+				syncScheduled.set(false);
+				journal.sync();
+			}, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Builds a profile's code history, and adds up what it was awarded today, from its journal records.
+	 */
+	private static final class JournalScan implements Consumer<JournalRecord>
+	{
+		private final CodeHistory codes;
+		private final long today = System.currentTimeMillis() / MILLIS_PER_DAY;
+		private long xpToday;
+		// Balance after the newest record
+		private boolean empty = true;
+		private int currentXp;
+		private int totalCoins;
+
+		JournalScan(CodeHistory codes)
+		{
+			this.codes = codes;
+		}
+
+		@Override
+		public void accept(JournalRecord r)
+		{
+			if (r.getType() == JournalRecord.AWARD && r.getTimestamp() / MILLIS_PER_DAY == today)
+			{
+				xpToday += r.getValue();
+			}
+			else if (r.getType() == JournalRecord.CASH_OUT)
+			{
+				codes.add(r.getTimestamp(), r.getValue(), r.code);
+			}
+			else if (r.getType() == JournalRecord.REDEEMED)
+			{
+				codes.setRedeemed(r.code, r.getValue() != 0);
+			}
+
+			empty = false;
+			currentXp = r.getCurrentXp();
+			totalCoins = r.getTotalCoins();
+		}
+	}
+
+	/**
+	 * A profile's state while another one is loaded.
+	 */
+	private static final class CachedProfile
+	{
+		private final Account account;
+		private final CodeHistory history;
+		// The profile's journal when it was cached, null if it had none
+		private final CoinJournal.Stamp journalStamp;
+
+		CachedProfile(Account account, CodeHistory history, CoinJournal.Stamp journalStamp)
+		{
+			this.account = account;
+			this.history = history;
+			this.journalStamp = journalStamp;
+		}
+
+		/**
+		 * @return whether nothing has been journaled for the profile since it was cached
+		 */
+		boolean isCurrent(JournalRecord last)
+		{
+			long balance = account.balance.snapshot();
+			return last != null && last.getCurrentXp() == CoinBalance.xp(balance)
+				&& last.getTotalCoins() == CoinBalance.coins(balance);
+		}
+	}
+
+	private static final class Account
+	{
+		private final String key;
+		private final CoinBalance balance;
+		private final AtomicBoolean dirty = new AtomicBoolean();
+		// Replaced whole on the client thread, never modified in place
+		private volatile int[] skillXp;
+		// XP awarded on the UTC day numbered day, set when loaded and then only used on the client thread
+		private long day;
+		private long xpToday;
+
+		Account(String key, CoinBalance balance, int[] skillXp)
+		{
+			this.key = key;
+			this.balance = balance;
+			this.skillXp = skillXp;
+		}
+
+		/**
+		 * Counts XP towards today's cap.
+		 *
+		 * @return how much of the XP fits under the cap
+		 */
+		int takeDailyAllowance(int xp, int capCoins, long now)
+		{
+			long today = now / MILLIS_PER_DAY;
+			if (today != day)
+			{
+				day = today;
+				xpToday = 0;
+			}
+
+			if (capCoins > 0)
+			{
+				long remaining = (long) capCoins * XP_PER_SILVER_COIN - xpToday;
+				xp = (int) Math.max(0, Math.min(xp, remaining));
+			}
+			xpToday += xp;
+			return xp;
+		}
+	}
+
+	/**
+	 * @return the newest in-memory state of a profile, loaded or cached, or null if it is only on
+	 * disk. Must be called holding the journal's lock, under which both are replaced.
+	 */
+	private Account findAccount(String key)
+	{
+		Account current = account;
+		if (current != null && current.key.equals(key))
+		{
+			return current;
+		}
+
+		CachedProfile cached = cache.get(key);
+		return cached != null ? cached.account : null;
+	}
+
+	/**
+	 * Hands coins back in the config of a profile that is neither loaded nor cached, keeping its
+	 * saved XP baseline.
+	 *
+	 * @param journaled the balance just journaled with the coins handed back, or null if it has
+	 * no journal to take it from, in which case the coins are added to the saved balance
+	 */
+	private synchronized void creditUnloaded(String key, int amount, Long journaled)
+	{
+		// Loaded or cached in the meantime, that copy was read after the journal and saves itself
+		if (findAccount(key) != null)
+		{
+			return;
+		}
+
+		LedgerRecord saved = readRecord(key);
+		int currentXp;
+		int totalCoins;
+		if (journaled != null)
+		{
+			currentXp = CoinBalance.xp(journaled);
+			totalCoins = CoinBalance.coins(journaled);
+		}
+		else
+		{
+			currentXp = saved != null ? saved.getCurrentXp() : 0;
+			totalCoins = (saved != null ? saved.getTotalCoins() : 0) + amount;
+		}
+
+		LedgerRecord record = new LedgerRecord(currentXp, totalCoins, saved != null ? saved.getSkillXp() : null);
+		configManager.setConfiguration(CONFIG_GROUP, key, CONFIG_KEY_LEDGER, record.encode());
+		metrics.increment(PluginMetrics.Counter.CONFIG_WRITES);
+	}
+
+	/**
+	 * Coins taken out of the balance for a cash-out that is still in progress. Exactly one of
+	 * {@link #commit} or {@link #rollback} takes effect, later calls do nothing. A commit that
+	 * cannot journal its codes rolls the coins back instead.
+	 * <p>
+	 * The player may switch profiles before the cash-out is settled, and the profile may even be
+	 * read back from disk into a new copy meanwhile. So a reservation only remembers the profile's
+	 * key, and settles against whichever copy of it is newest: the loaded one, a cached one, or
+	 * the one on disk.
+	 */
+	final class Reservation
+	{
+		private final String ownerKey;
+		private final int amount;
+		private final AtomicBoolean settled = new AtomicBoolean();
+
+		private Reservation(String ownerKey, int amount)
+		{
+			this.ownerKey = ownerKey;
+			this.amount = amount;
+		}
+
+		int getAmount()
+		{
+			return amount;
+		}
+
+		/**
+		 * Journals the codes the reserved coins were issued as, and forces them to disk before
+		 * returning so a code is never shown without a record of it.
+		 *
+		 * @param amountPerCode the amount of each code
+		 * @return true if the codes are on disk and can be shown, false if the reservation was
+		 * already settled or the codes could not be journaled, in which case the coins were
+		 * handed back and the codes must be thrown away
+		 */
+		boolean commit(List<String> codes, int amountPerCode)
+		{
+			if (!settled.compareAndSet(false, true))
+			{
+				return false;
+			}
+
+			long now = System.currentTimeMillis();
+			List<byte[]> decoded = new ArrayList<>(codes.size());
+			for (String code : codes)
+			{
+				decoded.add(Base64.getDecoder().decode(code));
+			}
+
+			boolean recorded;
+			boolean loaded;
+			synchronized (journal)
+			{
+				Account owner = findAccount(ownerKey);
+				loaded = owner != null && owner == account;
+				if (loaded)
+				{
+					long balance = owner.balance.snapshot();
+					appendCashOuts(decoded, amountPerCode, balance);
+					recorded = journal.sync();
+					if (recorded)
+					{
+						for (byte[] code : decoded)
+						{
+							history.add(now, amountPerCode, code);
+						}
+					}
+				}
+				else
+				{
+					// Switched away from, the codes go to the profile's own journal with the
+					// balance it has there, which the reservation already took the coins out of
+					recorded = journal.appendTo(ownerKey, last ->
+						appendCashOuts(decoded, amountPerCode, owner != null ? owner.balance.snapshot() : balance(last)));
+					// A cached copy's history does not have the codes, the next load reads them from the journal
+					cache.remove(ownerKey);
+				}
+			}
+
+			if (!recorded)
+			{
+				log.error("Failed to journal a cash-out, handing back its {} coins", amount);
+				handBack();
+				return false;
+			}
+
+			if (loaded)
+			{
+				history.fireChanged();
+			}
+			else
+			{
+				log.info("Journaled {} codes to profile {}, which was switched away from during the cash-out",
+					codes.size(), ownerKey);
+			}
+			return true;
+		}
+
+		/**
+		 * Hands the reserved coins back.
+		 */
+		void rollback()
+		{
+			if (settled.compareAndSet(false, true))
+			{
+				handBack();
+			}
+		}
+
+		private void handBack()
+		{
+			Account owner;
+			Long[] credited = new Long[1];
+			synchronized (journal)
+			{
+				owner = findAccount(ownerKey);
+				if (owner == null)
+				{
+					// Only on disk, add the coins to its last journaled balance
+					journal.appendTo(ownerKey, last ->
+					{
+						if (last != null)
+						{
+							credited[0] = CoinBalance.pack(last.getCurrentXp(), last.getTotalCoins() + amount);
+							journal.appendSnapshot(last.getCurrentXp(), last.getTotalCoins() + amount);
+						}
+					});
+				}
+				else
+				{
+					owner.balance.credit(amount);
+					long balance = owner.balance.snapshot();
+					if (owner == account)
+					{
+						// A commit that failed to write closed the journal, which may already have
+						// the coins taken out, and the journal wins over config on the next load
+						if (!journal.isWritable())
+						{
+							journal.open(ownerKey);
+						}
+						journal.appendSnapshot(CoinBalance.xp(balance), CoinBalance.coins(balance));
+						markDirty(owner);
+						return;
+					}
+
+					// Otherwise the journal, which wins over config, would still have the coins taken out
+					journal.appendTo(ownerKey, last -> journal.appendSnapshot(CoinBalance.xp(balance), CoinBalance.coins(balance)));
+				}
+			}
+
+			// The profile was switched while the coins were out, write them back to it directly
+			if (owner != null)
+			{
+				owner.dirty.set(true);
+				write(owner);
+			}
+			else
+			{
+				creditUnloaded(ownerKey, amount, credited[0]);
+			}
+		}
+
+		private void appendCashOuts(List<byte[]> codes, int amountPerCode, long balance)
+		{
+			for (byte[] code : codes)
+			{
+				journal.appendCashOut(code, amountPerCode, CoinBalance.xp(balance), CoinBalance.coins(balance));
+			}
+		}
+	}
+
+	/**
+	 * @return the balance after a journal record, or nothing if there is none
+	 */
+	private static long balance(JournalRecord last)
+	{
+		return last != null ? CoinBalance.pack(last.getCurrentXp(), last.getTotalCoins()) : 0;
+	}
+}
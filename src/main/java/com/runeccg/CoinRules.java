@@ -0,0 +1,206 @@
+package com.runeccg;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+
+/**
+ * How much of the XP gained in each skill counts towards Silver Coins, on each kind of world.
+ * <p>
+ * Rules are per-skill weights and per-{@link WorldType} multipliers in percent, from 0, which
+ * excludes the skill or world type, up to 100, which counts it in full. Rules can only reduce
+ * how much XP counts, never add to it, so every factor is at most {@link #ONE}. They are
+ * compiled into one flat table of 16.16 fixed-point factors, with a row for every combination of
+ * {@link #WORLD_TYPES} and a column per skill ordinal. The row of a world is looked up once when
+ * it is entered, so weighing a drop is a single array read however many rules there are.
+ * Instances are immutable and replaced whole when the config changes.
+ */
+@Slf4j
+final class CoinRules
+{
+	static final int FRACTION_BITS = 16;
+	static final int ONE = 1 << FRACTION_BITS;
+
+	/**
+	 * The world types that can have a multiplier, in the order of their bit in a world's row.
+	 */
+	static final WorldType[] WORLD_TYPES = {
+		WorldType.SEASONAL,
+		WorldType.DEADMAN,
+		WorldType.QUEST_SPEEDRUNNING,
+		WorldType.TOURNAMENT_WORLD,
+		WorldType.FRESH_START_WORLD,
+		WorldType.BETA_WORLD,
+		WorldType.NOSAVE_MODE,
+	};
+
+	private static final Skill[] SKILLS = Skill.values();
+	// Anything above counts in full, so no rule can award more coins than the XP gained is worth
+	private static final int MAX_PERCENT = 100;
+
+	static final CoinRules DEFAULT = compile(new int[0], new int[0]);
+
+	// (1 << WORLD_TYPES.length) rows of SKILLS.length factors
+	private final int[] factors;
+	// Whether every factor of a row is 0
+	private final boolean[] excluded;
+
+	private CoinRules(int[] factors, boolean[] excluded)
+	{
+		this.factors = factors;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * @return a bit for each of {@link #WORLD_TYPES} the world has, 0 for a normal world
+	 */
+	static int mask(Collection<WorldType> worldTypes)
+	{
+		int mask = 0;
+		for (int bit = 0; bit < WORLD_TYPES.length; bit++)
+		{
+			if (worldTypes.contains(WORLD_TYPES[bit]))
+			{
+				mask |= 1 << bit;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @return the offset of the world's row, to pass to {@link #factor} and {@link #isExcluded}
+	 */
+	static int row(int mask)
+	{
+		return mask * SKILLS.length;
+	}
+
+	static int row(Collection<WorldType> worldTypes)
+	{
+		return row(mask(worldTypes));
+	}
+
+	/**
+	 * @return the share of XP in the skill that counts on the row's world, in 16.16 fixed point
+	 */
+	int factor(int row, Skill skill)
+	{
+		return factors[row + skill.ordinal()];
+	}
+
+	/**
+	 * @return true if no XP counts on the row's world
+	 */
+	boolean isExcluded(int row)
+	{
+		return excluded[row / SKILLS.length];
+	}
+
+	/**
+	 * Compiles rules from the config's text form, a comma separated list of {@code name=percent}
+	 * like {@code Attack=50, Construction=0}. Anything not listed counts in full, percents outside
+	 * 0 to 100 are clamped, and entries that cannot be read are logged and skipped.
+	 */
+	static CoinRules parse(String skillWeights, String worldMultipliers)
+	{
+		int[] skillPercent = new int[SKILLS.length];
+		Arrays.fill(skillPercent, 100);
+		parsePercents(skillWeights, SKILLS, skillPercent, "skill");
+
+		int[] worldPercent = new int[WORLD_TYPES.length];
+		Arrays.fill(worldPercent, 100);
+		parsePercents(worldMultipliers, WORLD_TYPES, worldPercent, "world type");
+
+		return compile(skillPercent, worldPercent);
+	}
+
+	/**
+	 * Compiles rules from percents, clamping any outside 0 to 100.
+	 *
+	 * @param skillPercent weight of each skill by ordinal, skills past its end count in full
+	 * @param worldPercent multiplier of each of {@link #WORLD_TYPES}, types past its end count in full
+	 */
+	static CoinRules compile(int[] skillPercent, int[] worldPercent)
+	{
+		int rows = 1 << WORLD_TYPES.length;
+		int[] factors = new int[rows * SKILLS.length];
+		boolean[] excluded = new boolean[rows];
+
+		for (int mask = 0; mask < rows; mask++)
+		{
+			// Multipliers of every world type the world has, combined
+			long world = ONE;
+			for (int bit = 0; bit < WORLD_TYPES.length; bit++)
+			{
+				if ((mask & 1 << bit) != 0)
+				{
+					world = world * percentOf(worldPercent, bit) / 100;
+				}
+			}
+
+			boolean anything = false;
+			for (int skill = 0; skill < SKILLS.length; skill++)
+			{
+				int factor = (int) (world * percentOf(skillPercent, skill) / 100);
+				factors[mask * SKILLS.length + skill] = factor;
+				anything |= factor > 0;
+			}
+			excluded[mask] = !anything;
+		}
+		return new CoinRules(factors, excluded);
+	}
+
+	private static int percentOf(int[] percents, int index)
+	{
+		if (index >= percents.length)
+		{
+			return MAX_PERCENT;
+		}
+		return Math.max(0, Math.min(MAX_PERCENT, percents[index]));
+	}
+
+	private static <E extends Enum<E>> void parsePercents(String rules, E[] names, int[] percents, String kind)
+	{
+		if (rules == null || rules.trim().isEmpty())
+		{
+			return;
+		}
+
+		for (String rule : rules.split(","))
+		{
+			String[] parts = rule.split("=");
+			int index = parts.length == 2 ? indexOf(names, parts[0]) : -1;
+			if (index < 0)
+			{
+				log.warn("Ignoring {} rule \"{}\"", kind, rule.trim());
+				continue;
+			}
+
+			try
+			{
+				percents[index] = Integer.parseInt(parts[1].trim().replace("%", ""));
+			}
+			catch (NumberFormatException e)
+			{
+				log.warn("Ignoring {} rule \"{}\"", kind, rule.trim());
+			}
+		}
+	}
+
+	private static <E extends Enum<E>> int indexOf(E[] names, String name)
+	{
+		// Accepts "Fresh start world" as well as FRESH_START_WORLD
+		String normalized = name.trim().replace(' ', '_').toUpperCase(Locale.ROOT);
+		for (int i = 0; i < names.length; i++)
+		{
+			if (names[i].name().equals(normalized))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,99 @@
+package com.runeccg;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Singleton;
+import net.runelite.client.util.ImageUtil;
+
+/**
+ * The plugin's image resources, each decoded once and kept at every size it is shown at.
+ * <p>
+ * Sizes are scaled ahead of time into plain ARGB images with bicubic filtering, halving in steps
+ * when shrinking by more than half, instead of with {@code Image.getScaledInstance}, which scales
+ * slowly and asynchronously and has to be converted back to draw. Every caller asking for the same
+ * resource at the same size gets the same instance, so the images must never be drawn on.
+ */
+@Singleton
+class ImageCache
+{
+	static final String COIN_ICON = "panel_icon.png";
+
+	// Sizes the coin icon is shown at, in pixels square
+	static final int TOOLBAR_ICON_SIZE = 16;
+	static final int PANEL_ICON_SIZE = 48;
+	static final int OVERLAY_ICON_SIZE = 16;
+
+	// Keyed by resource, and by resource and size for scaled copies
+	private final Map<String, BufferedImage> images = new HashMap<>();
+
+	/**
+	 * @return the resource as decoded, or null if it could not be loaded
+	 */
+	synchronized BufferedImage getImage(String resource)
+	{
+		BufferedImage image = images.get(resource);
+		if (image == null && !images.containsKey(resource))
+		{
+			image = ImageUtil.loadImageResource(ImageCache.class, resource);
+			images.put(resource, image);
+		}
+		return image;
+	}
+
+	/**
+	 * @return the resource scaled to {@code size} pixels square, or null if it could not be loaded
+	 */
+	synchronized BufferedImage getImage(String resource, int size)
+	{
+		String key = resource + '@' + size;
+		BufferedImage image = images.get(key);
+		if (image == null)
+		{
+			BufferedImage original = getImage(resource);
+			if (original == null)
+			{
+				return null;
+			}
+
+			image = scale(original, size);
+			images.put(key, image);
+		}
+		return image;
+	}
+
+	static BufferedImage scale(BufferedImage source, int size)
+	{
+		BufferedImage scaled = source;
+		int width = source.getWidth();
+		int height = source.getHeight();
+		do
+		{
+			width = width > size ? Math.max(width / 2, size) : size;
+			height = height > size ? Math.max(height / 2, size) : size;
+			scaled = draw(scaled, width, height);
+		}
+		while (width != size || height != size);
+		return scaled;
+	}
+
+	private static BufferedImage draw(BufferedImage source, int width, int height)
+	{
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = target.createGraphics();
+		try
+		{
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+			g.drawImage(source, 0, 0, width, height, null);
+		}
+		finally
+		{
+			g.dispose();
+		}
+		return target;
+	}
+}
@@ -0,0 +1,76 @@
+package com.runeccg;
+
+import java.util.Base64;
+
+/**
+ * A single entry read back from a {@link CoinJournal}. Readers reuse one instance for every
+ * record they visit, so it must not be kept after the visitor returns.
+ */
+class JournalRecord
+{
+	/**
+	 * The full balance, written when a journal is started or compacted and after refunds.
+	 */
+	static final byte SNAPSHOT = 1;
+	/**
+	 * XP was gained, {@link #getValue()} holds how much.
+	 */
+	static final byte AWARD = 2;
+	/**
+	 * A code was issued, {@link #getValue()} holds its amount of Silver Coins.
+	 */
+	static final byte CASH_OUT = 3;
+	/**
+	 * A code was marked as redeemed, or back as unredeemed if {@link #getValue()} is 0.
+	 */
+	static final byte REDEEMED = 4;
+
+	byte type;
+	long timestamp;
+	int currentXp;
+	int totalCoins;
+	int value;
+	final byte[] code = new byte[CodeSigner.CODE_LENGTH];
+
+	byte getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return when the record was written, in epoch milliseconds
+	 */
+	long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * @return the XP progress towards the next coin after this record
+	 */
+	int getCurrentXp()
+	{
+		return currentXp;
+	}
+
+	/**
+	 * @return the Silver Coin balance after this record
+	 */
+	int getTotalCoins()
+	{
+		return totalCoins;
+	}
+
+	int getValue()
+	{
+		return value;
+	}
+
+	/**
+	 * @return the code of a {@link #CASH_OUT} or {@link #REDEEMED} record, in the form shown to the player
+	 */
+	String getCode()
+	{
+		return type == CASH_OUT || type == REDEEMED ? Base64.getEncoder().encodeToString(code) : null;
+	}
+}
@@ -0,0 +1,114 @@
+package com.runeccg;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations in nanoseconds into log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equal buckets, so any recorded value is
+ * reported within about 6% of what it was, from nanoseconds to minutes, using a fixed array.
+ * Recording is wait-free and allocates nothing, so it can be called from several threads.
+ */
+final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Values below SUB_BUCKETS get a bucket each, then one row of SUB_BUCKETS per power of two
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+
+		counts.incrementAndGet(bucketOf(nanos));
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	long getCount()
+	{
+		return count.sum();
+	}
+
+	long getMean()
+	{
+		long n = count.sum();
+		return n == 0 ? 0 : total.sum() / n;
+	}
+
+	long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value of the bucket the percentile falls in, or 0 if nothing was recorded
+	 */
+	long getPercentile(double percentile)
+	{
+		long n = count.sum();
+		if (n == 0)
+		{
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++)
+		{
+			seen += counts.get(bucket);
+			if (seen >= target)
+			{
+				return Math.min(highestValueOf(bucket), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	void reset()
+	{
+		for (int bucket = 0; bucket < BUCKETS; bucket++)
+		{
+			counts.set(bucket, 0);
+		}
+		count.reset();
+		total.reset();
+		max.reset();
+	}
+
+	static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,290 @@
+package com.runeccg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.function.Consumer;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Writes a profile's whole {@link CoinJournal}, every award and issued code, to a CSV or JSON file.
+ * <p>
+ * Each row has the time of the record in UTC, its type, its value, the code if it has one, and
+ * the XP progress and Silver Coin balance after it. The value is the XP gained for an
+ * {@code award}, the coins of a {@code cash_out}, and 1 or 0 for a code marked as
+ * {@code redeemed} or back as unredeemed. Journals that have been compacted only have one
+ * {@code award} per day.
+ * <p>
+ * Records are streamed from the journal and formatted one at a time into a reused buffer, which
+ * is written out through a {@link FileChannel} whenever it fills up, so memory use stays the
+ * same however long the history is. The rows go to a temporary file next to the target, which
+ * is moved over it once everything is written, so a failed export never touches a file that was
+ * already there. Exports read the journal from disk and can take a moment, so they must not run
+ * on the EDT or the client thread.
+ */
+@Singleton
+class LedgerExport
+{
+	enum Format
+	{
+		CSV("csv"),
+		JSON("json");
+
+		private final String extension;
+
+		Format(String extension)
+		{
+			this.extension = extension;
+		}
+
+		String getExtension()
+		{
+			return extension;
+		}
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final String CSV_HEADER = "time,type,value,code,progress_xp,silver_coins\n";
+
+	private final CoinJournal journal;
+
+	@Inject
+	LedgerExport(CoinJournal journal)
+	{
+		this.journal = journal;
+	}
+
+	/**
+	 * Writes the profile's history to a file, replacing it if it exists. A failed export
+	 * leaves the file as it was, or absent if there was none.
+	 *
+	 * @return the number of rows written
+	 */
+	int export(String profileKey, Path file, Format format) throws IOException
+	{
+		Path target = file.toAbsolutePath();
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try
+		{
+			int rows;
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+			{
+				RowWriter writer = new RowWriter(channel, format);
+				writer.begin();
+				journal.readAll(profileKey, writer);
+				writer.end();
+				rows = writer.rows;
+			}
+
+			try
+			{
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return rows;
+		}
+		catch (IOException | UncheckedIOException e)
+		{
+			// Only the file this export created, the target is untouched until the move
+			Files.deleteIfExists(temp);
+			throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+		}
+	}
+
+	private static String typeName(byte type)
+	{
+		switch (type)
+		{
+			case JournalRecord.SNAPSHOT:
+				return "snapshot";
+			case JournalRecord.AWARD:
+				return "award";
+			case JournalRecord.CASH_OUT:
+				return "cash_out";
+			case JournalRecord.REDEEMED:
+				return "redeemed";
+			default:
+				return "unknown";
+		}
+	}
+
+	/**
+	 * Formats each record into a reused builder, then copies it into the output buffer. Every
+	 * character written is ASCII, so no charset encoder is needed.
+	 */
+	private static final class RowWriter implements Consumer<JournalRecord>
+	{
+		private final FileChannel channel;
+		private final Format format;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final StringBuilder row = new StringBuilder(256);
+		// Base64 of a code, padded to whole groups of four characters
+		private final byte[] code = new byte[(CodeSigner.CODE_LENGTH + 2) / 3 * 4];
+		private int rows;
+		// Records are in time order, so the date is only formatted when the day changes
+		private long day = Long.MIN_VALUE;
+		private String date;
+
+		RowWriter(FileChannel channel, Format format)
+		{
+			this.channel = channel;
+			this.format = format;
+		}
+
+		void begin() throws IOException
+		{
+			row.setLength(0);
+			row.append(format == Format.CSV ? CSV_HEADER : "[");
+			write();
+		}
+
+		void end() throws IOException
+		{
+			row.setLength(0);
+			if (format == Format.JSON)
+			{
+				row.append(rows > 0 ? "\n]\n" : "]\n");
+			}
+			write();
+			buffer.flip();
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+
+		@Override
+		public void accept(JournalRecord r)
+		{
+			row.setLength(0);
+			boolean hasCode = r.getType() == JournalRecord.CASH_OUT || r.getType() == JournalRecord.REDEEMED;
+			if (hasCode)
+			{
+				Base64.getEncoder().encode(r.code, code);
+			}
+
+			if (format == Format.CSV)
+			{
+				appendTime(r.getTimestamp());
+				row.append(',').append(typeName(r.getType()))
+					.append(',').append(r.getValue())
+					.append(',');
+				appendCode(hasCode);
+				row.append(',').append(r.getCurrentXp())
+					.append(',').append(r.getTotalCoins())
+					.append('\n');
+			}
+			else
+			{
+				row.append(rows > 0 ? ",\n" : "\n").append("{\"time\":\"");
+				appendTime(r.getTimestamp());
+				row.append("\",\"type\":\"").append(typeName(r.getType()))
+					.append("\",\"value\":").append(r.getValue())
+					.append(",\"code\":");
+				if (hasCode)
+				{
+					row.append('"');
+					appendCode(true);
+					row.append('"');
+				}
+				else
+				{
+					row.append("null");
+				}
+				row.append(",\"progressXp\":").append(r.getCurrentXp())
+					.append(",\"silverCoins\":").append(r.getTotalCoins())
+					.append('}');
+			}
+
+			try
+			{
+				write();
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			rows++;
+		}
+
+		private void appendCode(boolean hasCode)
+		{
+			if (hasCode)
+			{
+				for (byte b : code)
+				{
+					row.append((char) b);
+				}
+			}
+		}
+
+		/**
+		 * Appends a time as ISO-8601 in UTC with milliseconds, like {@code 2026-03-01T12:00:00.000Z}.
+		 */
+		private void appendTime(long timestamp)
+		{
+			long recordDay = Math.floorDiv(timestamp, MILLIS_PER_DAY);
+			if (recordDay != day)
+			{
+				day = recordDay;
+				date = LocalDate.ofEpochDay(recordDay).toString();
+			}
+
+			int millis = (int) Math.floorMod(timestamp, MILLIS_PER_DAY);
+			row.append(date).append('T');
+			appendTwoDigits(millis / 3_600_000);
+			row.append(':');
+			appendTwoDigits(millis / 60_000 % 60);
+			row.append(':');
+			appendTwoDigits(millis / 1000 % 60);
+			row.append('.');
+			int fraction = millis % 1000;
+			if (fraction < 100)
+			{
+				row.append('0');
+			}
+			appendTwoDigits(fraction);
+			row.append('Z');
+		}
+
+		private void appendTwoDigits(int value)
+		{
+			if (value < 10)
+			{
+				row.append('0');
+			}
+			row.append(value);
+		}
+
+		private void write() throws IOException
+		{
+			if (buffer.remaining() < row.length())
+			{
+				buffer.flip();
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+
+			for (int i = 0; i < row.length(); i++)
+			{
+				buffer.put((byte) row.charAt(i));
+			}
+		}
+	}
+}
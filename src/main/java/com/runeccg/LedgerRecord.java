@@ -0,0 +1,109 @@
+package com.runeccg;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Everything {@link CoinLedger} saves for a profile, stored as a single RS profile config value,
+ * so RuneLite only has one key to mark dirty and sync when it changes.
+ * <p>
+ * The value is Base64 of a small big-endian record:
+ * <pre>
+ * byte   version, currently {@value #VERSION}
+ * int    XP progress towards the next coin
+ * int    Silver Coin balance
+ * byte   number of skills in the XP baseline, 0 if there is none
+ * int[]  experience of each skill in ordinal order, -1 if unseen
+ * </pre>
+ * A new version must keep decoding every older one, records from a newer version are refused.
+ */
+final class LedgerRecord
+{
+	static final byte VERSION = 1;
+
+	private static final int HEADER_BYTES = 1 + 4 + 4 + 1;
+	private static final int MAX_SKILLS = 255;
+
+	private final int currentXp;
+	private final int totalCoins;
+	private final int[] skillXp;
+
+	/**
+	 * @param skillXp indexed by skill ordinal, or null if there is no baseline. Not copied.
+	 */
+	LedgerRecord(int currentXp, int totalCoins, int[] skillXp)
+	{
+		if (skillXp != null && skillXp.length > MAX_SKILLS)
+		{
+			throw new IllegalArgumentException("Too many skills: " + skillXp.length);
+		}
+
+		this.currentXp = currentXp;
+		this.totalCoins = totalCoins;
+		this.skillXp = skillXp;
+	}
+
+	int getCurrentXp()
+	{
+		return currentXp;
+	}
+
+	int getTotalCoins()
+	{
+		return totalCoins;
+	}
+
+	/**
+	 * @return the XP baseline, not a copy, or null if there is none
+	 */
+	int[] getSkillXp()
+	{
+		return skillXp;
+	}
+
+	String encode()
+	{
+		int skills = skillXp != null ? skillXp.length : 0;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + skills * 4);
+		buffer.put(VERSION);
+		buffer.putInt(currentXp);
+		buffer.putInt(totalCoins);
+		buffer.put((byte) skills);
+		for (int i = 0; i < skills; i++)
+		{
+			buffer.putInt(skillXp[i]);
+		}
+		return Base64.getEncoder().encodeToString(buffer.array());
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the value is not a record this version can read
+	 */
+	static LedgerRecord decode(String encoded)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+		try
+		{
+			byte version = buffer.get();
+			if (version < 1 || version > VERSION)
+			{
+				throw new IllegalArgumentException("Unsupported ledger record version " + version);
+			}
+
+			int currentXp = buffer.getInt();
+			int totalCoins = buffer.getInt();
+			int skills = buffer.get() & 0xFF;
+			int[] skillXp = skills > 0 ? new int[skills] : null;
+			for (int i = 0; i < skills; i++)
+			{
+				skillXp[i] = buffer.getInt();
+			}
+			return new LedgerRecord(currentXp, totalCoins, skillXp);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IllegalArgumentException("Truncated ledger record", e);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import net.runelite.client.RuneLite;
+
+/**
+ * Counters and latency histograms for the plugin's hot paths, shown in the panel's developer
+ * section and dumpable to a file.
+ * <p>
+ * Only collected when the client runs in developer mode. Otherwise every call checks one final
+ * field and returns, and {@link #startTimer()} does not even read the clock.
+ */
+@Singleton
+class PluginMetrics
+{
+	enum Counter
+	{
+		STAT_CHANGED_PROCESSED("StatChanged processed"),
+		STAT_CHANGED_SKIPPED("StatChanged skipped"),
+		TICKS_SETTLED("Ticks with XP settled"),
+		CONFIG_READS("Config reads"),
+		CONFIG_WRITES("Config writes"),
+		PROFILE_CACHE_HITS("Profiles loaded from cache"),
+		EDT_POSTS("EDT runnables posted"),
+		CASH_OUTS("Cash-outs");
+
+		private final String label;
+
+		Counter(String label)
+		{
+			this.label = label;
+		}
+	}
+
+	enum Timer
+	{
+		STAT_CHANGED("onStatChanged"),
+		CASH_OUT("Cash-out");
+
+		private final String label;
+
+		Timer(String label)
+		{
+			this.label = label;
+		}
+	}
+
+	private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private final boolean enabled;
+	// Indexed by ordinal
+	private final LongAdder[] counters = new LongAdder[Counter.values().length];
+	private final LatencyHistogram[] timers = new LatencyHistogram[Timer.values().length];
+
+	@Inject
+	PluginMetrics(@Named("developerMode") boolean developerMode)
+	{
+		this.enabled = developerMode;
+		for (int i = 0; i < counters.length; i++)
+		{
+			counters[i] = new LongAdder();
+		}
+		for (int i = 0; i < timers.length; i++)
+		{
+			timers[i] = new LatencyHistogram();
+		}
+	}
+
+	boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	void increment(Counter counter)
+	{
+		if (enabled)
+		{
+			counters[counter.ordinal()].increment();
+		}
+	}
+
+	void add(Counter counter, long amount)
+	{
+		if (enabled)
+		{
+			counters[counter.ordinal()].add(amount);
+		}
+	}
+
+	/**
+	 * @return the start time to pass to {@link #stopTimer}, or 0 when disabled
+	 */
+	long startTimer()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	void stopTimer(Timer timer, long start)
+	{
+		if (enabled)
+		{
+			timers[timer.ordinal()].record(System.nanoTime() - start);
+		}
+	}
+
+	long getCount(Counter counter)
+	{
+		return counters[counter.ordinal()].sum();
+	}
+
+	LatencyHistogram getHistogram(Timer timer)
+	{
+		return timers[timer.ordinal()];
+	}
+
+	void reset()
+	{
+		for (LongAdder counter : counters)
+		{
+			counter.reset();
+		}
+		for (LatencyHistogram timer : timers)
+		{
+			timer.reset();
+		}
+	}
+
+	/**
+	 * @return every metric as plain text, latencies in microseconds
+	 */
+	String report()
+	{
+		StringBuilder report = new StringBuilder();
+		for (Counter counter : Counter.values())
+		{
+			report.append(counter.label).append(": ").append(getCount(counter)).append('\n');
+		}
+
+		for (Timer timer : Timer.values())
+		{
+			LatencyHistogram histogram = getHistogram(timer);
+			report.append('\n').append(timer.label).append(" (").append(histogram.getCount()).append(" samples)\n")
+				.append("  mean ").append(micros(histogram.getMean()))
+				.append("  p50 ").append(micros(histogram.getPercentile(50)))
+				.append("  p99 ").append(micros(histogram.getPercentile(99)))
+				.append("  max ").append(micros(histogram.getMax()))
+				.append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Writes the current {@link #report()} to a new file in {@code .runelite/runeccg}.
+	 *
+	 * @return the file written
+	 */
+	File dump() throws IOException
+	{
+		File directory = new File(RuneLite.RUNELITE_DIR, "runeccg");
+		Files.createDirectories(directory.toPath());
+		File file = new File(directory, "metrics-" + FILE_TIMESTAMP.format(LocalDateTime.now()) + ".txt");
+		Files.write(file.toPath(), report().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String micros(long nanos)
+	{
+		return String.format("%.1fus", nanos / 1000.0);
+	}
+}
@@ -0,0 +1,85 @@
+package com.runeccg;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State of the most recently used RS profiles that are not loaded right now, keyed by profile key.
+ * <p>
+ * At most {@code capacity} profiles are kept, the least recently used one making way for a new
+ * one. Values are only softly reachable, so the garbage collector drops them before it runs out
+ * of memory, and dropped values are purged from the map on the next access. Taking a value out
+ * removes it, as it becomes the loaded profile's state and the copy here would go stale.
+ * <p>
+ * Used from the client thread and the ledger's background executor, so every method is synchronized.
+ */
+final class ProfileCache<V>
+{
+	private final Map<String, SoftReference<V>> entries;
+
+	ProfileCache(int capacity)
+	{
+		// Access order, so the eldest entry is the least recently used
+		this.entries = new LinkedHashMap<String, SoftReference<V>>(capacity * 2, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SoftReference<V>> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Keeps a profile's state, replacing any kept before.
+	 */
+	synchronized void put(String key, V value)
+	{
+		purge();
+		entries.put(key, new SoftReference<>(value));
+	}
+
+	/**
+	 * @return the profile's state, no longer kept here, or null if there was none or it was
+	 * dropped to free memory
+	 */
+	synchronized V remove(String key)
+	{
+		SoftReference<V> entry = entries.remove(key);
+		return entry != null ? entry.get() : null;
+	}
+
+	/**
+	 * @return the profile's state, still kept here, or null if there is none or it was dropped
+	 * to free memory
+	 */
+	synchronized V get(String key)
+	{
+		SoftReference<V> entry = entries.get(key);
+		return entry != null ? entry.get() : null;
+	}
+
+	synchronized boolean contains(String key)
+	{
+		purge();
+		return entries.containsKey(key);
+	}
+
+	synchronized int size()
+	{
+		purge();
+		return entries.size();
+	}
+
+	synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	private void purge()
+	{
+		// Only a handful of entries, walking them is cheaper than tracking a reference queue
+		entries.values().removeIf(entry -> entry.get() == null);
+	}
+}
@@ -0,0 +1,85 @@
+package com.runeccg;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+
+/**
+ * Coalesces panel progress updates so the Swing EDT is not flooded during fast XP gains.
+ * <p>
+ * XP drops only mark the panel dirty. Once per game tick the latest ledger values are
+ * handed to the EDT as a single snapshot, with at most one runnable queued at a time,
+ * and the panel is only relabelled when the snapshot differs from what it already shows.
+ */
+class ProgressRefresher
+{
+	// Never a real snapshot, that would need a negative coin balance
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final RuneCCGPanel panel;
+	private final CoinLedger ledger;
+	private final PluginMetrics metrics;
+	private final AtomicLong pending = new AtomicLong(NONE);
+	private final Runnable applyTask = this::apply;
+
+	// Snapshot currently shown by the panel, only written on the EDT
+	private volatile long displayed = NONE;
+	// Only touched on the client thread
+	private boolean dirty;
+
+	ProgressRefresher(RuneCCGPanel panel, CoinLedger ledger, PluginMetrics metrics)
+	{
+		this.panel = panel;
+		this.ledger = ledger;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Notes that the ledger changed. Must be called on the client thread.
+	 */
+	void markDirty()
+	{
+		dirty = true;
+	}
+
+	/**
+	 * Publishes the ledger if it changed since the last tick. Must be called on the client thread.
+	 */
+	void onTick()
+	{
+		if (dirty)
+		{
+			dirty = false;
+			publish();
+		}
+	}
+
+	/**
+	 * Publishes the current ledger values right away. Safe to call from any thread.
+	 */
+	void publish()
+	{
+		final long snapshot = ledger.snapshot();
+		if (snapshot == displayed && pending.get() == NONE)
+		{
+			return;
+		}
+
+		if (pending.getAndSet(snapshot) == NONE)
+		{
+			metrics.increment(PluginMetrics.Counter.EDT_POSTS);
+			SwingUtilities.invokeLater(applyTask);
+		}
+	}
+
+	private void apply()
+	{
+		final long snapshot = pending.getAndSet(NONE);
+		if (snapshot == NONE || snapshot == displayed)
+		{
+			return;
+		}
+
+		displayed = snapshot;
+		panel.updateProgress(CoinBalance.xp(snapshot), CoinBalance.coins(snapshot));
+	}
+}
@@ -2,10 +2,67 @@ package com.runeccg;
 
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
+import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.ConfigSection;
 
-@ConfigGroup("runeccg")
+@ConfigGroup(RuneCCGConfig.GROUP)
 public interface RuneCCGConfig extends Config
 {
-	// Config is now stored per-character using ConfigManager directly
-	// See RuneCCGPlugin for getCurrentXp(), setCurrentXp(), getTotalCoins(), setTotalCoins()
+	String GROUP = "runeccg";
+
+	// XP progress and Silver Coins are stored per-character using ConfigManager directly
+	// See CoinLedger for how they are loaded and saved
+
+	@ConfigItem(
+		keyName = "showOverlay",
+		name = "Show overlay",
+		description = "Shows your Silver Coins and progress to the next one in the game view"
+	)
+	default boolean showOverlay()
+	{
+		return false;
+	}
+
+	@ConfigSection(
+		name = "Coin rules",
+		description = "How much of the XP you gain counts towards Silver Coins",
+		position = 1
+	)
+	String rulesSection = "rules";
+
+	@ConfigItem(
+		keyName = "skillWeights",
+		name = "Skill weights",
+		description = "Percent of each skill's XP that counts, from 0 to 100, e.g. Attack=50, Construction=0. Unlisted skills count in full.",
+		section = rulesSection,
+		position = 0
+	)
+	default String skillWeights()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+		keyName = "worldMultipliers",
+		name = "World multipliers",
+		description = "Percent of XP that counts on each world type, from 0 to 100, e.g. Seasonal=50, Deadman=0. 0 stops counting there without asking.",
+		section = rulesSection,
+		position = 1
+	)
+	default String worldMultipliers()
+	{
+		return "";
+	}
+
+	@ConfigItem(
+		keyName = "dailyCoinCap",
+		name = "Daily coin cap",
+		description = "Most Silver Coins that can be earned per day (UTC), 0 for no cap",
+		section = rulesSection,
+		position = 2
+	)
+	default int dailyCoinCap()
+	{
+		return 0;
+	}
 }
@@ -0,0 +1,133 @@
+package com.runeccg;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.ComponentConstants;
+
+/**
+ * Optional in-game box with the coin icon, the Silver Coin balance and a bar of the progress to the next coin.
+ * <p>
+ * Overlays are rendered every frame, so the box is drawn once into an image and each frame only
+ * copies that image. It is redrawn when the ledger snapshot differs from the one it was drawn
+ * for, which a frame checks by comparing a single long, without formatting or allocating anything.
+ */
+@Singleton
+class RuneCCGOverlay extends Overlay
+{
+	private static final int WIDTH = ComponentConstants.STANDARD_WIDTH;
+	private static final int PADDING = 4;
+	private static final int LINE_GAP = 3;
+	private static final int BAR_HEIGHT = 14;
+	private static final Color COINS_COLOR = Color.YELLOW;
+	private static final Color BAR_COLOR = new Color(255, 200, 0);
+	private static final Color BAR_BACKGROUND_COLOR = new Color(0, 0, 0, 120);
+	// Never a real snapshot, that would need a negative coin balance
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final CoinLedger ledger;
+	private final ImageCache images;
+	// Returned from every frame, never changed after the image is first drawn
+	private final Dimension size = new Dimension();
+	private BufferedImage image;
+	private BufferedImage icon;
+	private int lineHeight;
+	private long drawn = NONE;
+
+	@Inject
+	RuneCCGOverlay(CoinLedger ledger, ImageCache images)
+	{
+		this.ledger = ledger;
+		this.images = images;
+		setPosition(OverlayPosition.TOP_LEFT);
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		if (!ledger.isLoaded())
+		{
+			return null;
+		}
+
+		final long snapshot = ledger.snapshot();
+		if (snapshot != drawn)
+		{
+			draw(graphics, snapshot);
+		}
+
+		graphics.drawImage(image, 0, 0, null);
+		return size;
+	}
+
+	private void draw(Graphics2D graphics, long snapshot)
+	{
+		final Font font = FontManager.getRunescapeSmallFont();
+		final FontMetrics metrics = graphics.getFontMetrics(font);
+		if (image == null)
+		{
+			icon = images.getImage(ImageCache.COIN_ICON, ImageCache.OVERLAY_ICON_SIZE);
+			lineHeight = Math.max(metrics.getHeight(), icon != null ? icon.getHeight() : 0);
+			size.setSize(WIDTH, PADDING + lineHeight + LINE_GAP + BAR_HEIGHT + PADDING);
+			image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		final int xp = CoinBalance.xp(snapshot);
+		final int coins = CoinBalance.coins(snapshot);
+		final Graphics2D g = image.createGraphics();
+		try
+		{
+			g.setComposite(AlphaComposite.Src);
+			g.setColor(ComponentConstants.STANDARD_BACKGROUND_COLOR);
+			g.fillRect(0, 0, size.width, size.height);
+			g.setComposite(AlphaComposite.SrcOver);
+			g.setFont(font);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+
+			// The balance is centred in the space right of the icon
+			int textLeft = 0;
+			if (icon != null)
+			{
+				g.drawImage(icon, PADDING, PADDING + (lineHeight - icon.getHeight()) / 2, null);
+				textLeft = PADDING + icon.getWidth();
+			}
+			final String coinsText = coins + " Silver Coins";
+			final int textY = PADDING + (lineHeight - metrics.getHeight()) / 2 + metrics.getAscent();
+			drawShadowed(g, coinsText, textLeft + (size.width - textLeft - metrics.stringWidth(coinsText)) / 2, textY, COINS_COLOR);
+
+			final int barY = PADDING + lineHeight + LINE_GAP;
+			final int barWidth = size.width - 2 * PADDING;
+			g.setColor(BAR_BACKGROUND_COLOR);
+			g.fillRect(PADDING, barY, barWidth, BAR_HEIGHT);
+			g.setColor(BAR_COLOR);
+			g.fillRect(PADDING, barY, barWidth * xp / CoinLedger.XP_PER_SILVER_COIN, BAR_HEIGHT);
+
+			final String xpText = xp + " / " + CoinLedger.XP_PER_SILVER_COIN;
+			final int xpTextY = barY + (BAR_HEIGHT - metrics.getHeight()) / 2 + metrics.getAscent();
+			drawShadowed(g, xpText, (size.width - metrics.stringWidth(xpText)) / 2, xpTextY, Color.WHITE);
+		}
+		finally
+		{
+			g.dispose();
+		}
+		drawn = snapshot;
+	}
+
+	private static void drawShadowed(Graphics2D g, String text, int x, int y, Color color)
+	{
+		g.setColor(Color.BLACK);
+		g.drawString(text, x + 1, y + 1);
+		g.setColor(color);
+		g.drawString(text, x, y);
+	}
+}
@@ -1,30 +1,48 @@
 package com.runeccg;
 
 import java.awt.BorderLayout;
+import java.awt.CardLayout;
 import java.awt.Color;
 import java.awt.Desktop;
 import java.awt.Dimension;
-import java.awt.Image;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.awt.HeadlessException;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.function.Consumer;
-import javax.imageio.ImageIO;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import javax.inject.Inject;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JEditorPane;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.event.HyperlinkEvent;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Skill;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.PluginPanel;
@@ -32,16 +50,46 @@ import net.runelite.client.ui.PluginPanel;
 @Slf4j
 public class RuneCCGPanel extends PluginPanel
 {
-    private static final int XP_PER_SILVER_COIN = 1000;
-    private final JLabel xpLabel = new JLabel("XP: 0 / 1000");
-    private final JLabel coinsLabel = new JLabel();
-    private final JProgressBar progressBar = new JProgressBar(0, XP_PER_SILVER_COIN);
+    private static final int MAX_CODES_PER_CASH_OUT = CodeSigner.MAX_BATCH_SIZE;
+    private static final String NORMAL_VIEW = "normal";
+    private static final String LOGGED_OUT_VIEW = "loggedOut";
+    private static final String EVENT_WORLD_VIEW = "eventWorld";
+    private static final String HISTORY_VIEW = "history";
+    private static final int PREFETCH_DELAY_MS = 5000;
+    private static final String GENERATE_CODE_TEXT = "Generate Code";
+    private static final int METRICS_REFRESH_MS = 1000;
+    private static final Skill[] SKILLS = Skill.values();
+    // Their text is kept up to date before the views are built, building must not reset it
+    private final JLabel xpLabel = new JLabel("XP: 0 / " + CoinLedger.XP_PER_SILVER_COIN);
+    private final JLabel coinsLabel = new JLabel("0 Silver Coins");
+    private final JProgressBar progressBar = new JProgressBar(0, CoinLedger.XP_PER_SILVER_COIN);
     private final JTextField lastCodeField = new JTextField();
     private BufferedImage coinIcon;
-    private Consumer<Integer> cashOutCallback;
+    private final JButton cashOutButton = new JButton(GENERATE_CODE_TEXT);
+    private BiFunction<Integer, Integer, CompletableFuture<?>> cashOutCallback;
+    private BiFunction<Path, LedgerExport.Format, CompletableFuture<?>> exportCallback;
+    // Set on the EDT while an export runs, so a second one is not started over it
+    private boolean exporting;
+    private CodeHistory codeHistory;
+    private BiConsumer<Integer, Boolean> redeemedCallback;
+    private CodeHistoryPanel historyPanel;
+    private final CardLayout cardLayout = new CardLayout();
+    private final JPanel cardPanel = new JPanel(cardLayout);
     private JPanel headerPanel;
-    private JPanel contentPanel;
-    private JPanel loggedOutPanel;
+    private Runnable eventWorldConfirmCallback;
+    private PluginMetrics metrics;
+    private JTextArea metricsArea;
+    private Timer metricsRefresh;
+    private JComboBox<XpRates.Window> rateWindowBox;
+    private JLabel xpRateLabel;
+    private JLabel coinRateLabel;
+    private JLabel nextCoinLabel;
+    private JTextArea skillRatesArea;
+    private XpRates.Snapshot rates;
+    private int displayedXp;
+    // Start with panel disabled (user not logged in)
+    private String currentView = LOGGED_OUT_VIEW;
+    private boolean built;
 
     @Inject
     public RuneCCGPanel()
@@ -50,16 +98,6 @@ public class RuneCCGPanel extends PluginPanel
         setBorder(new EmptyBorder(10, 10, 10, 10));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
 
-        // Load coin icon
-        try
-        {
-            coinIcon = ImageIO.read(getClass().getResourceAsStream("panel_icon.png"));
-        }
-        catch (IOException e)
-        {
-            log.error("Failed to load coin icon", e);
-        }
-
         // Header panel
         headerPanel = new JPanel();
         headerPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
@@ -74,8 +112,124 @@ public class RuneCCGPanel extends PluginPanel
 
         add(headerPanel, BorderLayout.NORTH);
 
-        // Content panel
-        contentPanel = new JPanel();
+        // Views are built on first use, see ensureBuilt()
+        cardPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        add(cardPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Sets the coin icon shown next to the balance, already at the size it is shown at. Must be
+     * called before the views are built.
+     */
+    public void setCoinIcon(BufferedImage coinIcon)
+    {
+        this.coinIcon = coinIcon;
+    }
+
+    /**
+     * Sets the code history to list and the callback that marks its codes as redeemed.
+     * Must be called before the views are built.
+     */
+    void setCodeHistory(CodeHistory codeHistory, BiConsumer<Integer, Boolean> redeemedCallback)
+    {
+        this.codeHistory = codeHistory;
+        this.redeemedCallback = redeemedCallback;
+    }
+
+    /**
+     * Updates the history view after the code history changed. Does nothing until it is built.
+     */
+    public void refreshHistory()
+    {
+        if (historyPanel != null)
+        {
+            historyPanel.refresh();
+        }
+    }
+
+    /**
+     * Sets the metrics shown in the developer section, which is only added when they are
+     * enabled. Must be called before the views are built.
+     */
+    void setMetrics(PluginMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onActivate()
+    {
+        ensureBuilt();
+        if (metricsRefresh != null)
+        {
+            refreshMetrics();
+            metricsRefresh.start();
+        }
+    }
+
+    @Override
+    public void onDeactivate()
+    {
+        if (metricsRefresh != null)
+        {
+            metricsRefresh.stop();
+        }
+    }
+
+    /**
+     * Builds the views on the EDT once the client has had a few seconds to finish starting up,
+     * unless the sidebar tab is opened first.
+     */
+    public void prefetchWhenIdle()
+    {
+        Timer prefetch = new Timer(PREFETCH_DELAY_MS, e -> ensureBuilt());
+        prefetch.setRepeats(false);
+        prefetch.start();
+    }
+
+    boolean isBuilt()
+    {
+        return built;
+    }
+
+    /**
+     * Builds the normal, logged-out, event world and history views the first time they are needed.
+     * They are then kept and switched between with the card layout.
+     */
+    void ensureBuilt()
+    {
+        if (built)
+        {
+            return;
+        }
+        built = true;
+
+        long start = System.nanoTime();
+        cardPanel.add(buildContentPanel(), NORMAL_VIEW);
+        cardPanel.add(buildLoggedOutPanel(), LOGGED_OUT_VIEW);
+        cardPanel.add(buildEventWorldPanel(), EVENT_WORLD_VIEW);
+        if (codeHistory != null)
+        {
+            historyPanel = new CodeHistoryPanel(codeHistory, redeemedCallback, this::onExport, () -> showView(NORMAL_VIEW));
+            cardPanel.add(historyPanel, HISTORY_VIEW);
+        }
+        cardLayout.show(cardPanel, currentView);
+        revalidate();
+        log.debug("Built RuneCCG panel views in {}ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void showView(String view)
+    {
+        currentView = view;
+        if (built)
+        {
+            cardLayout.show(cardPanel, view);
+        }
+    }
+
+    private JPanel buildContentPanel()
+    {
+        JPanel contentPanel = new JPanel();
         contentPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
         contentPanel.setBorder(new EmptyBorder(15, 10, 10, 10));
         contentPanel.setLayout(new BorderLayout(0, 10));
@@ -88,13 +242,11 @@ public class RuneCCGPanel extends PluginPanel
 
         if (coinIcon != null)
         {
-            Image scaledIcon = coinIcon.getScaledInstance(48, 48, Image.SCALE_SMOOTH);
-            JLabel iconLabel = new JLabel(new ImageIcon(scaledIcon));
+            JLabel iconLabel = new JLabel(new ImageIcon(coinIcon));
             iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
             coinPanel.add(iconLabel, BorderLayout.WEST);
         }
 
-        coinsLabel.setText("0 Silver Coins");
         coinsLabel.setFont(FontManager.getRunescapeBoldFont());
         coinsLabel.setForeground(Color.YELLOW);
         coinsLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -131,6 +283,9 @@ public class RuneCCGPanel extends PluginPanel
         bottomPanel.setLayout(new BoxLayout(bottomPanel, BoxLayout.Y_AXIS));
         bottomPanel.setBorder(new EmptyBorder(10, 0, 0, 0));
 
+        bottomPanel.add(buildRatesPanel());
+        bottomPanel.add(Box.createVerticalStrut(10));
+
         // Cash out panel
         JPanel cashOutPanel = new JPanel();
         cashOutPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
@@ -149,28 +304,11 @@ public class RuneCCGPanel extends PluginPanel
         amountField.setPreferredSize(new Dimension(0, 30));
         inputContainer.add(amountField, BorderLayout.NORTH);
 
-        JButton cashOutButton = new JButton("Generate Code");
+        JTextField countField = new JTextField("1");
+        inputContainer.add(createCountPanel(countField), BorderLayout.CENTER);
+
         cashOutButton.setPreferredSize(new Dimension(0, 30));
-        cashOutButton.addActionListener(e -> {
-            try
-            {
-                int amount = Integer.parseInt(amountField.getText().trim());
-                if (amount <= 0)
-                {
-                    JOptionPane.showMessageDialog(this, "Please enter a positive number", "Invalid Amount", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                if (cashOutCallback != null)
-                {
-                    cashOutCallback.accept(amount);
-                    amountField.setText("");
-                }
-            }
-            catch (NumberFormatException ex)
-            {
-                JOptionPane.showMessageDialog(this, "Please enter a valid number", "Invalid Input", JOptionPane.ERROR_MESSAGE);
-            }
-        });
+        cashOutButton.addActionListener(e -> onGenerateCode(amountField, countField));
         inputContainer.add(cashOutButton, BorderLayout.SOUTH);
 
         cashOutPanel.add(inputContainer, BorderLayout.CENTER);
@@ -188,6 +326,12 @@ public class RuneCCGPanel extends PluginPanel
         lastCodeField.setEditable(false);
         codeDisplayPanel.add(lastCodeField, BorderLayout.CENTER);
 
+        JButton historyButton = new JButton("View Code History");
+        historyButton.setPreferredSize(new Dimension(0, 30));
+        historyButton.setEnabled(codeHistory != null);
+        historyButton.addActionListener(e -> showView(HISTORY_VIEW));
+        codeDisplayPanel.add(historyButton, BorderLayout.SOUTH);
+
         cashOutPanel.add(codeDisplayPanel, BorderLayout.SOUTH);
 
         bottomPanel.add(cashOutPanel);
@@ -239,284 +383,450 @@ public class RuneCCGPanel extends PluginPanel
         instructionsPanel.add(instructionsPane, BorderLayout.CENTER);
         bottomPanel.add(instructionsPanel);
 
-        contentPanel.add(bottomPanel, BorderLayout.SOUTH);
+        if (metrics != null && metrics.isEnabled())
+        {
+            bottomPanel.add(Box.createVerticalStrut(10));
+            bottomPanel.add(buildMetricsPanel());
+        }
 
-        add(contentPanel, BorderLayout.CENTER);
+        contentPanel.add(bottomPanel, BorderLayout.SOUTH);
 
-        // Start with panel disabled (user not logged in)
-        setContentEnabled(false);
+        return contentPanel;
     }
 
-    public void setCashOutCallback(Consumer<Integer> callback)
+    private JPanel buildRatesPanel()
     {
-        this.cashOutCallback = callback;
+        JPanel ratesPanel = new JPanel();
+        ratesPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        ratesPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        ratesPanel.setLayout(new BorderLayout(0, 8));
+
+        JPanel titlePanel = new JPanel(new BorderLayout(5, 0));
+        titlePanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+
+        JLabel ratesTitle = new JLabel("Rates over:");
+        ratesTitle.setFont(FontManager.getRunescapeSmallFont());
+        titlePanel.add(ratesTitle, BorderLayout.WEST);
+
+        rateWindowBox = new JComboBox<>(XpRates.Window.values());
+        rateWindowBox.setSelectedItem(XpRates.Window.HOUR);
+        rateWindowBox.addActionListener(e -> renderRates());
+        titlePanel.add(rateWindowBox, BorderLayout.CENTER);
+
+        ratesPanel.add(titlePanel, BorderLayout.NORTH);
+
+        JPanel totals = new JPanel(new GridLayout(3, 1, 0, 2));
+        totals.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        xpRateLabel = new JLabel();
+        // XpRates records XP after the skill weights and world multipliers, not the XP the game shows
+        xpRateLabel.setToolTipText("XP counted towards Silver Coins, after skill weights and world multipliers");
+        coinRateLabel = new JLabel();
+        nextCoinLabel = new JLabel();
+        totals.add(xpRateLabel);
+        totals.add(coinRateLabel);
+        totals.add(nextCoinLabel);
+        ratesPanel.add(totals, BorderLayout.CENTER);
+
+        skillRatesArea = new JTextArea();
+        skillRatesArea.setEditable(false);
+        skillRatesArea.setToolTipText("Counted XP/hr by skill");
+        skillRatesArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+        skillRatesArea.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        ratesPanel.add(skillRatesArea, BorderLayout.SOUTH);
+
+        renderRates();
+        return ratesPanel;
     }
 
-    public void showCodeDialog(String code)
+    /**
+     * Shows new XP rates, kept until the views are built if they are not yet.
+     */
+    void updateRates(XpRates.Snapshot rates)
     {
-        lastCodeField.setText(code);
-        JOptionPane.showMessageDialog(this,
-                "Code generated and copied to clipboard:\n\n" + code + "\n\nPaste this code on the website to redeem your Silver Coins!",
-                "Cash Out Code",
-                JOptionPane.INFORMATION_MESSAGE);
+        this.rates = rates;
+        renderRates();
     }
 
-    public void updateProgress(int currentXp, int totalCoins)
+    private void renderRates()
     {
-        progressBar.setValue(currentXp);
-        xpLabel.setText(String.format("XP: %d / %d", currentXp, XP_PER_SILVER_COIN));
-        coinsLabel.setText(String.format("%d Silver Coins", totalCoins));
+        if (rateWindowBox == null)
+        {
+            return;
+        }
+
+        XpRates.Window window = (XpRates.Window) rateWindowBox.getSelectedItem();
+        double xpPerHour = rates != null ? rates.getXpPerHour(window, XpRates.TOTAL) : 0;
+        xpRateLabel.setText(String.format("Counted XP/hr: %,.0f", xpPerHour));
+        coinRateLabel.setText(String.format("Silver Coins/hr: %,.1f", xpPerHour / CoinLedger.XP_PER_SILVER_COIN));
+        nextCoinLabel.setText("Next coin in: " + formatTimeToNextCoin(xpPerHour));
+
+        StringBuilder skills = new StringBuilder();
+        for (Skill skill : SKILLS)
+        {
+            double skillXpPerHour = rates != null ? rates.getXpPerHour(window, skill.ordinal()) : 0;
+            if (skillXpPerHour > 0)
+            {
+                if (skills.length() > 0)
+                {
+                    skills.append('\n');
+                }
+                skills.append(String.format("%-13s%,10.0f/hr", skill.getName(), skillXpPerHour));
+            }
+        }
+        skillRatesArea.setText(skills.toString());
     }
 
-    public void showEventWorldWarning(Runnable onConfirm)
+    private String formatTimeToNextCoin(double xpPerHour)
     {
-        // Clear content panel
-        contentPanel.removeAll();
-        contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
-
-        contentPanel.add(Box.createVerticalStrut(20));
+        if (xpPerHour <= 0)
+        {
+            return "-";
+        }
 
-        // Warning message
-        JEditorPane warningPane = new JEditorPane();
-        warningPane.setContentType("text/html");
-        warningPane.setEditable(false);
-        warningPane.setOpaque(false);
-        warningPane.setFocusable(false);
-        warningPane.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        long seconds = (long) Math.ceil((CoinLedger.XP_PER_SILVER_COIN - displayedXp) * 3600 / xpPerHour);
+        if (seconds >= 3600)
+        {
+            return String.format("%dh %dm", seconds / 3600, seconds % 3600 / 60);
+        }
+        return String.format("%dm %ds", seconds / 60, seconds % 60);
+    }
 
-        String warningText = "<html><body style='font-family: sans-serif; font-size: 12px; color: #ffffff; text-align: center;'>"
-                + "<p style='margin: 10px; line-height: 1.5;'><b style='color: #ff0000; font-size: 14px;'>EVENT WORLD DETECTED</b></p>"
-                + "<p style='margin: 10px; color: #ffcc00; line-height: 1.5;'>This is not a main game world. XP may be boosted here causing you to gain more coins than you normally would.</p>"
-                + "<p style='margin: 10px; line-height: 1.5;'>Would you still like to track XP anyway?</p>"
-                + "</body></html>";
+    private JPanel buildMetricsPanel()
+    {
+        JPanel metricsPanel = new JPanel();
+        metricsPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        metricsPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        metricsPanel.setLayout(new BorderLayout(0, 8));
+
+        JLabel metricsTitle = new JLabel("Developer Metrics:");
+        metricsTitle.setFont(FontManager.getRunescapeSmallFont());
+        metricsPanel.add(metricsTitle, BorderLayout.NORTH);
+
+        metricsArea = new JTextArea();
+        metricsArea.setEditable(false);
+        metricsArea.setLineWrap(true);
+        metricsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+        metricsArea.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        metricsPanel.add(metricsArea, BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new GridLayout(1, 2, 5, 0));
+        buttons.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refreshMetrics();
+        });
+        buttons.add(resetButton);
 
-        warningPane.setText(warningText);
-        warningPane.setAlignmentX(CENTER_ALIGNMENT);
-        contentPanel.add(warningPane);
+        JButton dumpButton = new JButton("Dump to File");
+        dumpButton.addActionListener(e -> {
+            try
+            {
+                File file = metrics.dump();
+                JOptionPane.showMessageDialog(this, "Metrics written to " + file, "Metrics", JOptionPane.INFORMATION_MESSAGE);
+            }
+            catch (IOException ex)
+            {
+                log.error("Failed to write metrics", ex);
+                JOptionPane.showMessageDialog(this, "Failed to write metrics: " + ex.getMessage(), "Metrics", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        buttons.add(dumpButton);
 
-        contentPanel.add(Box.createVerticalStrut(20));
+        metricsPanel.add(buttons, BorderLayout.SOUTH);
 
-        // Confirm button
-        JButton confirmButton = new JButton("Yes Please!");
-        confirmButton.setMaximumSize(new Dimension(200, 40));
-        confirmButton.setAlignmentX(CENTER_ALIGNMENT);
-        confirmButton.setBackground(new Color(70, 130, 70));
-        confirmButton.setForeground(Color.WHITE);
-        confirmButton.setFont(FontManager.getRunescapeBoldFont());
-        confirmButton.addActionListener(e -> onConfirm.run());
+        // Only runs while the tab is open, see onActivate() and onDeactivate()
+        metricsRefresh = new Timer(METRICS_REFRESH_MS, e -> refreshMetrics());
+        refreshMetrics();
 
-        contentPanel.add(confirmButton);
-        contentPanel.add(Box.createVerticalGlue());
+        return metricsPanel;
+    }
 
-        revalidate();
-        repaint();
+    private void refreshMetrics()
+    {
+        metricsArea.setText(metrics.report());
     }
 
-    public void setContentEnabled(boolean enabled)
+    /**
+     * Sets the cash-out to run for an amount and number of codes. The button stays disabled
+     * until the returned future completes.
+     */
+    public void setCashOutCallback(BiFunction<Integer, Integer, CompletableFuture<?>> callback)
     {
-        if (!enabled)
-        {
-            // Hide content panel and show "logged out" message
-            contentPanel.setVisible(false);
+        this.cashOutCallback = callback;
+    }
 
-            loggedOutPanel = new JPanel();
-            loggedOutPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
-            loggedOutPanel.setLayout(new BoxLayout(loggedOutPanel, BoxLayout.Y_AXIS));
+    /**
+     * Sets the export to run for a chosen file and format. Exports are not started while one
+     * is still running, until the returned future completes.
+     */
+    void setExportCallback(BiFunction<Path, LedgerExport.Format, CompletableFuture<?>> callback)
+    {
+        this.exportCallback = callback;
+    }
 
-            JLabel messageLabel = new JLabel("Please log in or relog to see silver and track XP");
-            messageLabel.setFont(FontManager.getRunescapeFont());
-            messageLabel.setForeground(Color.GRAY);
-            messageLabel.setAlignmentX(CENTER_ALIGNMENT);
-            messageLabel.setBorder(new EmptyBorder(10, 0, 0, 0));
+    private void onExport()
+    {
+        if (exportCallback == null || exporting)
+        {
+            return;
+        }
 
-            loggedOutPanel.add(Box.createVerticalGlue());
-            loggedOutPanel.add(messageLabel);
-            loggedOutPanel.add(Box.createVerticalGlue());
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export History");
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (LedgerExport.Format format : LedgerExport.Format.values())
+        {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    format.name() + " (*." + format.getExtension() + ")", format.getExtension()));
+        }
+        chooser.setSelectedFile(new File("runeccg-history." + LedgerExport.Format.CSV.getExtension()));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+        {
+            return;
+        }
 
-            add(loggedOutPanel, BorderLayout.CENTER);
+        // The filter picks the format, and its extension is added if the name has none
+        String extension = ((FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+        LedgerExport.Format format = LedgerExport.Format.valueOf(extension.toUpperCase(Locale.ROOT));
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains("."))
+        {
+            file = new File(file.getParentFile(), file.getName() + "." + extension);
         }
-        else
+        if (file.exists() && JOptionPane.showConfirmDialog(this,
+                file.getName() + " already exists.\nDo you want to replace it?",
+                "Export History",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION)
         {
-            // Remove logged out panel and show content panel
-            if (loggedOutPanel != null)
-            {
-                remove(loggedOutPanel);
-                loggedOutPanel = null;
-            }
-            add(contentPanel, BorderLayout.CENTER);
-            contentPanel.setVisible(true);
+            return;
         }
-        revalidate();
-        repaint();
+
+        exporting = true;
+        exportCallback.apply(file.toPath(), format).whenComplete((result, error) ->
+                SwingUtilities.invokeLater(() -> exporting = false));
     }
 
-    public void rebuildNormalUI()
+    private JPanel createCountPanel(JTextField countField)
     {
-        // Clear content panel
-        contentPanel.removeAll();
-        contentPanel.setLayout(new BorderLayout(0, 10));
-
-        // Coin display panel
-        JPanel coinPanel = new JPanel();
-        coinPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        coinPanel.setBorder(new EmptyBorder(15, 10, 15, 10));
-        coinPanel.setLayout(new BorderLayout());
+        JPanel countPanel = new JPanel();
+        countPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        countPanel.setLayout(new BorderLayout(5, 0));
 
-        if (coinIcon != null)
-        {
-            Image scaledIcon = coinIcon.getScaledInstance(48, 48, Image.SCALE_SMOOTH);
-            JLabel iconLabel = new JLabel(new ImageIcon(scaledIcon));
-            iconLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            coinPanel.add(iconLabel, BorderLayout.WEST);
-        }
+        JLabel countLabel = new JLabel("Number of codes:");
+        countLabel.setFont(FontManager.getRunescapeSmallFont());
+        countPanel.add(countLabel, BorderLayout.WEST);
 
-        coinsLabel.setFont(FontManager.getRunescapeBoldFont());
-        coinsLabel.setForeground(Color.YELLOW);
-        coinsLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        coinPanel.add(coinsLabel, BorderLayout.CENTER);
+        countField.setPreferredSize(new Dimension(0, 30));
+        countPanel.add(countField, BorderLayout.CENTER);
 
-        contentPanel.add(coinPanel, BorderLayout.NORTH);
+        return countPanel;
+    }
 
-        // Progress panel
-        JPanel progressPanel = new JPanel();
-        progressPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
-        progressPanel.setLayout(new BorderLayout(0, 8));
+    private void onGenerateCode(JTextField amountField, JTextField countField)
+    {
+        try
+        {
+            int amount = Integer.parseInt(amountField.getText().trim());
+            if (amount <= 0)
+            {
+                JOptionPane.showMessageDialog(this, "Please enter a positive number", "Invalid Amount", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
-        JLabel progressTitle = new JLabel("Progress to Next Silver Coin:");
-        progressTitle.setHorizontalAlignment(SwingConstants.CENTER);
-        progressTitle.setFont(FontManager.getRunescapeSmallFont());
-        progressPanel.add(progressTitle, BorderLayout.NORTH);
+            String countText = countField.getText().trim();
+            int count = countText.isEmpty() ? 1 : Integer.parseInt(countText);
+            if (count <= 0 || count > MAX_CODES_PER_CASH_OUT)
+            {
+                JOptionPane.showMessageDialog(this, "Please enter between 1 and " + MAX_CODES_PER_CASH_OUT + " codes", "Invalid Amount", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
-        progressBar.setStringPainted(false);
-        progressBar.setPreferredSize(new Dimension(0, 24));
-        progressBar.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        progressBar.setForeground(new Color(255, 200, 0));
-        progressPanel.add(progressBar, BorderLayout.CENTER);
+            if (cashOutCallback != null && cashOutButton.isEnabled())
+            {
+                // Block further cash-outs until this one is done
+                cashOutButton.setEnabled(false);
+                cashOutButton.setText("Generating...");
+                cashOutCallback.apply(amount, count).whenComplete((result, error) ->
+                        SwingUtilities.invokeLater(() ->
+                        {
+                            cashOutButton.setEnabled(true);
+                            cashOutButton.setText(GENERATE_CODE_TEXT);
+                        }));
+                amountField.setText("");
+                countField.setText("1");
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            JOptionPane.showMessageDialog(this, "Please enter a valid number", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-        xpLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        xpLabel.setFont(FontManager.getRunescapeFont());
-        xpLabel.setBorder(new EmptyBorder(5, 0, 0, 0));
-        progressPanel.add(xpLabel, BorderLayout.SOUTH);
+    /**
+     * Copies codes to the system clipboard, for cash-outs and the history alike. Called on the EDT.
+     *
+     * @return false if the clipboard could not be written, for example while another application holds it
+     */
+    static boolean copyToClipboard(String text)
+    {
+        try
+        {
+            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
+            return true;
+        }
+        catch (IllegalStateException | HeadlessException | SecurityException e)
+        {
+            log.warn("Failed to copy codes to the clipboard", e);
+            return false;
+        }
+    }
 
-        contentPanel.add(progressPanel, BorderLayout.CENTER);
+    /**
+     * @param copied whether the code could be copied to the clipboard
+     */
+    public void showCodeDialog(String code, boolean copied)
+    {
+        lastCodeField.setText(code);
+        JOptionPane.showMessageDialog(this,
+                (copied ? "Code generated and copied to clipboard:" : "Code generated. The clipboard is unavailable, copy the code from here:")
+                        + "\n\n" + code + "\n\nPaste this code on the website to redeem your Silver Coins!",
+                "Cash Out Code",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
 
-        // Bottom panel for cash out and debug
-        JPanel bottomPanel = new JPanel();
-        bottomPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
-        bottomPanel.setLayout(new BoxLayout(bottomPanel, BoxLayout.Y_AXIS));
-        bottomPanel.setBorder(new EmptyBorder(10, 0, 0, 0));
+    /**
+     * @param copied whether the codes could be copied to the clipboard
+     */
+    public void showCodesDialog(List<String> codes, boolean copied)
+    {
+        lastCodeField.setText(codes.get(codes.size() - 1));
 
-        // Cash out panel
-        JPanel cashOutPanel = new JPanel();
-        cashOutPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        cashOutPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-        cashOutPanel.setLayout(new BorderLayout(0, 8));
+        JTextArea codesArea = new JTextArea(String.join("\n", codes), 10, 32);
+        codesArea.setEditable(false);
 
-        JLabel cashOutTitle = new JLabel("Cash Out Silver Coins:");
-        cashOutTitle.setFont(FontManager.getRunescapeSmallFont());
-        cashOutPanel.add(cashOutTitle, BorderLayout.NORTH);
+        JOptionPane.showMessageDialog(this,
+                new Object[]{
+                        codes.size() + (copied ? " codes generated and copied to clipboard, one per line:"
+                                : " codes generated. The clipboard is unavailable, copy the codes from here:"),
+                        new JScrollPane(codesArea),
+                        "Paste each code on the website to redeem your Silver Coins!"
+                },
+                "Cash Out Codes",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
 
-        JPanel inputContainer = new JPanel();
-        inputContainer.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        inputContainer.setLayout(new BorderLayout(0, 5));
+    public void updateProgress(int currentXp, int totalCoins)
+    {
+        displayedXp = currentXp;
+        progressBar.setValue(currentXp);
+        xpLabel.setText("XP: " + currentXp + " / " + CoinLedger.XP_PER_SILVER_COIN);
+        coinsLabel.setText(totalCoins + " Silver Coins");
+    }
 
-        JTextField amountField = new JTextField();
-        amountField.setPreferredSize(new Dimension(0, 30));
-        inputContainer.add(amountField, BorderLayout.NORTH);
+    /**
+     * Shows the event world prompt until it is confirmed, logged out, or the normal view is shown.
+     */
+    public void showEventWorldWarning(Runnable onConfirm)
+    {
+        eventWorldConfirmCallback = onConfirm;
+        showView(EVENT_WORLD_VIEW);
+    }
 
-        JButton cashOutButton = new JButton("Generate Code");
-        cashOutButton.setPreferredSize(new Dimension(0, 30));
-        cashOutButton.addActionListener(e -> {
-            try
-            {
-                int amount = Integer.parseInt(amountField.getText().trim());
-                if (amount <= 0)
-                {
-                    JOptionPane.showMessageDialog(this, "Please enter a positive number", "Invalid Amount", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                if (cashOutCallback != null)
-                {
-                    cashOutCallback.accept(amount);
-                    amountField.setText("");
-                }
-            }
-            catch (NumberFormatException ex)
-            {
-                JOptionPane.showMessageDialog(this, "Please enter a valid number", "Invalid Input", JOptionPane.ERROR_MESSAGE);
-            }
-        });
-        inputContainer.add(cashOutButton, BorderLayout.SOUTH);
+    /**
+     * Accepts the event world prompt, if it is showing.
+     */
+    void confirmEventWorld()
+    {
+        Runnable onConfirm = eventWorldConfirmCallback;
+        if (onConfirm != null)
+        {
+            onConfirm.run();
+        }
+    }
 
-        cashOutPanel.add(inputContainer, BorderLayout.CENTER);
+    public void showNormalView()
+    {
+        eventWorldConfirmCallback = null;
+        showView(NORMAL_VIEW);
+    }
 
-        // Last generated code display
-        JPanel codeDisplayPanel = new JPanel();
-        codeDisplayPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        codeDisplayPanel.setLayout(new BorderLayout(0, 5));
+    public void setContentEnabled(boolean enabled)
+    {
+        if (enabled)
+        {
+            showNormalView();
+        }
+        else
+        {
+            // Show "logged out" message
+            eventWorldConfirmCallback = null;
+            showView(LOGGED_OUT_VIEW);
+        }
+    }
 
-        JLabel codeLabel = new JLabel("Last Generated Code:");
-        codeLabel.setFont(FontManager.getRunescapeSmallFont());
-        codeDisplayPanel.add(codeLabel, BorderLayout.NORTH);
+    private JPanel buildLoggedOutPanel()
+    {
+        JPanel loggedOutPanel = new JPanel();
+        loggedOutPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        loggedOutPanel.setLayout(new BoxLayout(loggedOutPanel, BoxLayout.Y_AXIS));
 
-        lastCodeField.setPreferredSize(new Dimension(0, 30));
-        lastCodeField.setEditable(false);
-        codeDisplayPanel.add(lastCodeField, BorderLayout.CENTER);
+        JLabel messageLabel = new JLabel("Please log in or relog to see silver and track XP");
+        messageLabel.setFont(FontManager.getRunescapeFont());
+        messageLabel.setForeground(Color.GRAY);
+        messageLabel.setAlignmentX(CENTER_ALIGNMENT);
+        messageLabel.setBorder(new EmptyBorder(10, 0, 0, 0));
 
-        cashOutPanel.add(codeDisplayPanel, BorderLayout.SOUTH);
+        loggedOutPanel.add(Box.createVerticalGlue());
+        loggedOutPanel.add(messageLabel);
+        loggedOutPanel.add(Box.createVerticalGlue());
 
-        bottomPanel.add(cashOutPanel);
+        return loggedOutPanel;
+    }
 
-        bottomPanel.add(Box.createVerticalStrut(10));
+    private JPanel buildEventWorldPanel()
+    {
+        JPanel eventWorldPanel = new JPanel();
+        eventWorldPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        eventWorldPanel.setBorder(new EmptyBorder(15, 10, 10, 10));
+        eventWorldPanel.setLayout(new BoxLayout(eventWorldPanel, BoxLayout.Y_AXIS));
 
-        // Instructions panel
-        JPanel instructionsPanel = new JPanel();
-        instructionsPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
-        instructionsPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-        instructionsPanel.setLayout(new BorderLayout());
+        eventWorldPanel.add(Box.createVerticalStrut(20));
 
-        JEditorPane instructionsPane = new JEditorPane();
-        instructionsPane.setContentType("text/html");
-        instructionsPane.setEditable(false);
-        instructionsPane.setOpaque(false);
-        instructionsPane.setFocusable(false);
+        // Warning message
+        JEditorPane warningPane = new JEditorPane();
+        warningPane.setContentType("text/html");
+        warningPane.setEditable(false);
+        warningPane.setOpaque(false);
+        warningPane.setFocusable(false);
+        warningPane.setBackground(ColorScheme.DARK_GRAY_COLOR);
 
-        String instructions = "<html><body style='font-family: sans-serif; font-size: 10px; color: #b8b8b8;'>"
-                + "<p style='margin-top: 0; margin-bottom: 8px;'><b style='color: #ff981f;'>Where do I open packs?</b><br>"
-                + "To give the best graphical experience, pack openings are done on a dedicated website - navigate to "
-                + "<a href='https://www.runeccg.com'>RuneCCG.com</a> to buy and open packs!</p>"
-                + "<p style='margin-bottom: 8px;'><b style='color: #ff981f;'>How do I move my coins from here to RuneCCG?</b><br>"
-                + "1) Specify how many coins you want to cash out in the dialogue box<br>"
-                + "2) Click the \"Generate Code\" button. This will deduct that amount from your balance<br>"
-                + "3) Navigate to <a href='https://www.runeccg.com'>RuneCCG.com</a><br>"
-                + "4) Click the currency button in the top right to open the Add Currency interface<br>"
-                + "5) Paste the code in that you copied, you will be granted your coins</p>"
-                + "<p style='color: #ff0000; font-weight: bold; margin-bottom: 0;'>DO NOT LOSE YOUR CODE OR YOU WILL NOT BE ABLE TO CLAIM YOUR COINS</p>"
+        String warningText = "<html><body style='font-family: sans-serif; font-size: 12px; color: #ffffff; text-align: center;'>"
+                + "<p style='margin: 10px; line-height: 1.5;'><b style='color: #ff0000; font-size: 14px;'>EVENT WORLD DETECTED</b></p>"
+                + "<p style='margin: 10px; color: #ffcc00; line-height: 1.5;'>This is not a main game world. XP may be boosted here causing you to gain more coins than you normally would.</p>"
+                + "<p style='margin: 10px; line-height: 1.5;'>Would you still like to track XP anyway?</p>"
                 + "</body></html>";
 
-        instructionsPane.setText(instructions);
+        warningPane.setText(warningText);
+        warningPane.setAlignmentX(CENTER_ALIGNMENT);
+        eventWorldPanel.add(warningPane);
 
-        // Add hyperlink listener
-        instructionsPane.addHyperlinkListener(e -> {
-            if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED)
-            {
-                try
-                {
-                    Desktop.getDesktop().browse(new URI(e.getURL().toString()));
-                }
-                catch (Exception ex)
-                {
-                    log.error("Failed to open URL", ex);
-                }
-            }
-        });
+        eventWorldPanel.add(Box.createVerticalStrut(20));
 
-        instructionsPanel.add(instructionsPane, BorderLayout.CENTER);
-        bottomPanel.add(instructionsPanel);
+        // Confirm button
+        JButton confirmButton = new JButton("Yes Please!");
+        confirmButton.setMaximumSize(new Dimension(200, 40));
+        confirmButton.setAlignmentX(CENTER_ALIGNMENT);
+        confirmButton.setBackground(new Color(70, 130, 70));
+        confirmButton.setForeground(Color.WHITE);
+        confirmButton.setFont(FontManager.getRunescapeBoldFont());
+        confirmButton.addActionListener(e -> confirmEventWorld());
 
-        contentPanel.add(bottomPanel, BorderLayout.SOUTH);
+        eventWorldPanel.add(confirmButton);
+        eventWorldPanel.add(Box.createVerticalGlue());
 
-        revalidate();
-        repaint();
+        return eventWorldPanel;
     }
 }
@@ -1,36 +1,38 @@
 package com.runeccg;
 
-import java.awt.Toolkit;
-import java.awt.datatransfer.StringSelection;
-import java.awt.image.BufferedImage;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
-import java.util.Base64;
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import com.google.inject.Provides;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
-import net.runelite.api.Skill;
-import net.runelite.api.WorldType;
 import net.runelite.api.events.StatChanged;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.WorldChanged;
 import net.runelite.api.GameState;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.RuneScapeProfileChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
-import net.runelite.client.util.ImageUtil;
+import net.runelite.client.ui.overlay.OverlayManager;
 
 @Slf4j
 @PluginDescriptor(
@@ -47,40 +49,65 @@ public class RuneCCGPlugin extends Plugin
 	@Inject
 	private ClientToolbar clientToolbar;
 
-	private RuneCCGPanel panel;
-	private NavigationButton navButton;
-	private final Map<Skill, Integer> previousXpMap = new HashMap<>();
-	private boolean userConfirmedEventWorld = false;
-	private boolean eventWorldPromptShown = false;
-
-	// Secret key for HMAC signing - KEEP THIS SECRET
-	// In production, this should match the key on your backend
-	private static final String SECRET_KEY = "RuneCCG_Secret_Key_2026_Change_This_In_Production";
-	private static final String CONFIG_GROUP = "runeccg";
-	private static final String CONFIG_KEY_CURRENT_XP = "currentXp";
-	private static final String CONFIG_KEY_TOTAL_COINS = "totalCoins";
-
-	// Helper methods for per-character config storage
-	private int getCurrentXp()
-	{
-		Integer xp = configManager.getRSProfileConfiguration(CONFIG_GROUP, CONFIG_KEY_CURRENT_XP, int.class);
-		return xp != null ? xp : 0;
-	}
+	@Inject
+	private CoinLedger ledger;
 
-	private void setCurrentXp(int xp)
-	{
-		configManager.setRSProfileConfiguration(CONFIG_GROUP, CONFIG_KEY_CURRENT_XP, xp);
-	}
+	@Inject
+	private CodeSigner codeSigner;
 
-	private int getTotalCoins()
-	{
-		Integer coins = configManager.getRSProfileConfiguration(CONFIG_GROUP, CONFIG_KEY_TOTAL_COINS, int.class);
-		return coins != null ? coins : 0;
-	}
+	@Inject
+	private PluginMetrics metrics;
+
+	@Inject
+	private RuneCCGConfig config;
+
+	@Inject
+	private OverlayManager overlayManager;
+
+	@Inject
+	private RuneCCGOverlay overlay;
+
+	@Inject
+	private ImageCache images;
 
-	private void setTotalCoins(int coins)
+	@Inject
+	private LedgerExport ledgerExport;
+
+	// Profile loads and cash-outs run here one at a time, off the EDT, the client thread and the
+	// client's shared executor. Lives as long as the plugin, so whatever one run leaves queued
+	// finishes before anything the next run starts. Its thread exits while it is idle.
+	private final ExecutorService ledgerExecutor = newWorker("RuneCCG ledger");
+	// Exports get their own thread, a long one must hold up neither cash-outs nor other plugins
+	private ExecutorService exportExecutor;
+	private RuneCCGPanel panel;
+	private ProgressRefresher progressRefresher;
+	private NavigationButton navButton;
+	private final XpTracker xpTracker = new XpTracker();
+	private final WorldEligibility eligibility = new WorldEligibility(xpTracker);
+	private final XpRates rates = new XpRates();
+	private int ticksSinceRatesPublished;
+	// XP gained since the last game tick, weighed by the rules in 16.16 fixed point, settled into
+	// the ledger once per tick. Client thread only.
+	private long pendingXp;
+	// Compiled from the config, replaced whole when it changes
+	private volatile CoinRules rules = CoinRules.DEFAULT;
+	// Types of the current world as a CoinRules mask, and its row in the rules, read on entering it
+	private int worldMask;
+	private int worldRow;
+	// Profile whose saved baseline the tracker was restored from, null until one is
+	private String baselineProfile;
+	// Set on entering a world, until the client's experience of every skill has been read once
+	private boolean seedPending;
+
+	// Rates move with time as well as XP, so they are sent to the panel every few ticks
+	private static final int RATES_PUBLISH_TICKS = 5;
+	// How long an idle worker thread is kept before it exits
+	private static final long WORKER_IDLE_SECONDS = 30;
+
+	@Provides
+	RuneCCGConfig provideConfig(ConfigManager configManager)
 	{
-		configManager.setRSProfileConfiguration(CONFIG_GROUP, CONFIG_KEY_TOTAL_COINS, coins);
+		return configManager.getConfig(RuneCCGConfig.class);
 	}
 
 	@Override
@@ -88,24 +115,49 @@ public class RuneCCGPlugin extends Plugin
 	{
 		log.info("RuneCCG plugin started!");
 
-		panel = injector.getInstance(RuneCCGPanel.class);
+		exportExecutor = newWorker("RuneCCG export");
+
+		// Get the HMAC and SecureRandom ready before the first cash-out
+		ledgerExecutor.execute(codeSigner::warmUp);
 
-		final BufferedImage icon = ImageUtil.loadImageResource(getClass(), "panel_icon.png");
+		// Only a light shell, the panel's views are built when the tab is first opened
+		panel = injector.getInstance(RuneCCGPanel.class);
+		panel.setCoinIcon(images.getImage(ImageCache.COIN_ICON, ImageCache.PANEL_ICON_SIZE));
+		panel.setMetrics(metrics);
+		panel.setCodeHistory(ledger.getHistory(), ledger::setRedeemed);
+		ledger.getHistory().setChangeListener(() -> runOnEdt(panel::refreshHistory));
+		progressRefresher = new ProgressRefresher(panel, ledger, metrics);
 
 		navButton = NavigationButton.builder()
 				.tooltip("RuneCCG")
-				.icon(icon)
+				.icon(images.getImage(ImageCache.COIN_ICON, ImageCache.TOOLBAR_ICON_SIZE))
 				.priority(5)
 				.panel(panel)
 				.build();
 
 		clientToolbar.addNavigation(navButton);
+		panel.prefetchWhenIdle();
+
+		applyRules();
 
 		// Initialize the panel with current values
-		panel.updateProgress(getCurrentXp(), getTotalCoins());
+		loadLedger();
 
 		// Set up callbacks
 		panel.setCashOutCallback(this::cashOutSilverCoins);
+		panel.setExportCallback(this::exportHistory);
+
+		if (config.showOverlay())
+		{
+			overlayManager.add(overlay);
+		}
+
+		if (client.getGameState() == GameState.LOGGED_IN)
+		{
+			rates.startSession(System.currentTimeMillis());
+			runOnEdt(() -> panel.setContentEnabled(true));
+			enterWorld();
+		}
 	}
 
 	@Override
@@ -113,8 +165,17 @@ public class RuneCCGPlugin extends Plugin
 	{
 		log.info("RuneCCG plugin stopped!");
 		clientToolbar.removeNavigation(navButton);
-		userConfirmedEventWorld = false;
-		eventWorldPromptShown = false;
+		overlayManager.remove(overlay);
+		// Not interrupted, that would close the journal's channel if the export was syncing it
+		exportExecutor.shutdown();
+		settlePendingXp();
+		ledger.getHistory().setChangeListener(null);
+		// The ledger thread's last task, behind any load or cash-out in progress, so the EDT does not
+		// wait for them to finish journaling. Starting up again queues its load after it.
+		ledgerExecutor.execute(ledger::unload);
+		forgetBaseline();
+		rates.endSession();
+		eligibility.reset();
 	}
 
 	@Subscribe
@@ -123,188 +184,428 @@ public class RuneCCGPlugin extends Plugin
 		if (gameStateChanged.getGameState() == GameState.LOGGED_IN)
 		{
 			// Enable panel and refresh data for current character
-			SwingUtilities.invokeLater(() -> {
-				panel.setContentEnabled(true);
-				panel.updateProgress(getCurrentXp(), getTotalCoins());
-			});
-			checkEventWorld();
+			loadLedger();
+			if (!rates.isSessionStarted())
+			{
+				rates.startSession(System.currentTimeMillis());
+			}
+			runOnEdt(() -> panel.setContentEnabled(true));
+			enterWorld();
 		}
 		else if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN ||
 				 gameStateChanged.getGameState() == GameState.HOPPING)
 		{
-			userConfirmedEventWorld = false;
-			eventWorldPromptShown = false;
-			previousXpMap.clear(); // Clear XP tracking when changing worlds
+			// XP from the world being left still belongs to the profile being flushed, along with
+			// the baseline it was measured from. The next world may be a different profile.
+			settlePendingXp();
+			eligibility.leave();
+			forgetBaseline();
+			ledger.flush();
 
 			// Disable panel when logged out
 			if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN)
 			{
-				SwingUtilities.invokeLater(() -> panel.setContentEnabled(false));
+				rates.endSession();
+				runOnEdt(() -> panel.setContentEnabled(false));
+				// Whichever account logs in next is likely one played before
+				ledger.prefetch();
 			}
 		}
 	}
 
 	@Subscribe
-	public void onStatChanged(StatChanged statChanged)
+	public void onConfigChanged(ConfigChanged event)
 	{
-		if (isEventWorld() && !userConfirmedEventWorld)
+		if (!event.getGroup().equals(RuneCCGConfig.GROUP))
 		{
 			return;
 		}
 
-		Skill skill = statChanged.getSkill();
-		int currentXp = statChanged.getXp();
+		switch (event.getKey())
+		{
+			case "showOverlay":
+				if (config.showOverlay())
+				{
+					overlayManager.add(overlay);
+				}
+				else
+				{
+					overlayManager.remove(overlay);
+				}
+				break;
+			case "skillWeights":
+			case "worldMultipliers":
+			case "dailyCoinCap":
+				applyRules();
+				break;
+		}
+	}
 
-		// Get previous XP for this skill
-		Integer previousXp = previousXpMap.get(skill);
+	@Subscribe
+	public void onWorldChanged(WorldChanged event)
+	{
+		// Only re-evaluated while in a world, logging in enters the new one
+		if (eligibility.getState() != WorldEligibility.State.OFFLINE)
+		{
+			enterWorld();
+		}
+	}
 
-		if (previousXp == null)
+	@Subscribe
+	public void onRuneScapeProfileChanged(RuneScapeProfileChanged event)
+	{
+		if (client.getGameState() != GameState.LOGGED_IN)
 		{
-			// First time seeing this skill, initialize it
-			previousXpMap.put(skill, currentXp);
 			return;
 		}
 
-		// Calculate actual XP gained
-		int xpGained = currentXp - previousXp;
+		settlePendingXp();
+		// Nothing is counted until the new profile's baseline can be restored from its ledger
+		if (!Objects.equals(configManager.getRSProfileKey(), baselineProfile))
+		{
+			forgetBaseline();
+		}
+		loadLedger();
+	}
+
+	@Subscribe
+	public void onGameTick(GameTick gameTick)
+	{
+		restoreBaseline();
+		if (seedPending && baselineProfile != null)
+		{
+			// One read of every skill, so skills without a saved baseline do not lose their first drop.
+			// Retried next tick if the client has not loaded the player's stats yet.
+			seedPending = !xpTracker.seedUnseen(client.getSkillExperiences());
+		}
+		settlePendingXp();
+		progressRefresher.onTick();
+
+		if (++ticksSinceRatesPublished >= RATES_PUBLISH_TICKS && rates.isSessionStarted())
+		{
+			ticksSinceRatesPublished = 0;
+			XpRates.Snapshot snapshot = rates.snapshot(System.currentTimeMillis());
+			runOnEdt(() -> panel.updateRates(snapshot));
+		}
+	}
+
+	@Subscribe
+	public void onStatChanged(StatChanged statChanged)
+	{
+		final long start = metrics.startTimer();
+		restoreBaseline();
+		int xpGained = xpTracker.update(statChanged.getSkill(), statChanged.getXp());
 
 		if (xpGained <= 0)
 		{
+			metrics.increment(PluginMetrics.Counter.STAT_CHANGED_SKIPPED);
+			metrics.stopTimer(PluginMetrics.Timer.STAT_CHANGED, start);
 			return;
 		}
 
-		// Update the previous XP tracker
-		previousXpMap.put(skill, currentXp);
+		// Several skills can change in one tick, they are awarded together on the next game tick
+		final long weighed = (long) xpGained * rules.factor(worldRow, statChanged.getSkill());
+		pendingXp += weighed;
+		rates.record(statChanged.getSkill(), (int) (weighed >> CoinRules.FRACTION_BITS), System.currentTimeMillis());
+		metrics.increment(PluginMetrics.Counter.STAT_CHANGED_PROCESSED);
+		metrics.stopTimer(PluginMetrics.Timer.STAT_CHANGED, start);
+	}
 
-		// Add XP to current progress
-		int progressXp = getCurrentXp() + xpGained;
-		int coinsEarned = progressXp / 1000;
+	/**
+	 * Loads the current RS profile's ledger on the ledger thread, then shows its values. Its XP
+	 * baseline is restored on the client thread by the first tick or XP drop after that.
+	 */
+	private void loadLedger()
+	{
+		ledgerExecutor.execute(() ->
+		{
+			ledger.load();
+			progressRefresher.publish();
+		});
+	}
 
-		if (coinsEarned > 0)
+	/**
+	 * Restores the loaded profile's saved XP baseline into the tracker, unless it already holds it,
+	 * so XP gained since the profile was last seen is counted from where it left off. Does nothing
+	 * until the ledger has loaded the profile the client is on.
+	 */
+	private void restoreBaseline()
+	{
+		String profile = ledger.getProfileKey();
+		if (profile == null || profile.equals(baselineProfile) || !profile.equals(configManager.getRSProfileKey()))
 		{
-			// Award coins
-			setTotalCoins(getTotalCoins() + coinsEarned);
-			// Keep remaining XP
-			progressXp = progressXp % 1000;
+			return;
 		}
 
-		setCurrentXp(progressXp);
+		xpTracker.setBaseline(ledger.getSkillBaseline());
+		baselineProfile = profile;
+		seedPending = true;
+	}
 
-		// Update panel
-		SwingUtilities.invokeLater(() ->
-				panel.updateProgress(getCurrentXp(), getTotalCoins())
-		);
+	/**
+	 * Forgets the tracker's baseline once it has been settled into the ledger.
+	 */
+	private void forgetBaseline()
+	{
+		// Less than one weighed XP left over from settling, it cannot be carried to another profile
+		pendingXp = 0;
+		xpTracker.reset();
+		baselineProfile = null;
+		seedPending = false;
 	}
 
-	private void cashOutSilverCoins(int amount)
+	/**
+	 * Awards the XP gained since the last tick as a single ledger update, so a burst of drops
+	 * costs one coin computation, journal record and panel publish.
+	 */
+	private void settlePendingXp()
 	{
-		int currentCoins = getTotalCoins();
+		// The baseline is saved before the XP measured from it is awarded, see CoinLedger
+		if (baselineProfile != null && baselineProfile.equals(ledger.getProfileKey()))
+		{
+			int[] baseline = xpTracker.takeBaseline();
+			if (baseline != null)
+			{
+				ledger.updateSkillBaseline(baseline);
+			}
+		}
 
-		if (amount > currentCoins)
+		// Only whole XP is awarded, the fraction left by the weights carries over to the next tick
+		long whole = pendingXp >> CoinRules.FRACTION_BITS;
+		if (whole == 0)
 		{
-			SwingUtilities.invokeLater(() ->
-					JOptionPane.showMessageDialog(panel,
-							"Insufficient Silver Coins!\nYou have: " + currentCoins + "\nRequested: " + amount,
-							"Insufficient Funds",
-							JOptionPane.ERROR_MESSAGE)
-			);
 			return;
 		}
+		pendingXp -= whole << CoinRules.FRACTION_BITS;
 
-		// Generate code
-		String code = encodeCoins(amount);
+		// Add XP to current progress, awarding a coin for every full 1000
+		do
+		{
+			final int xp = (int) Math.min(whole, Integer.MAX_VALUE);
+			ledger.award(xp);
+			whole -= xp;
+		}
+		while (whole > 0);
 
-		// Deduct coins
-		setTotalCoins(currentCoins - amount);
-		panel.updateProgress(getCurrentXp(), getTotalCoins());
+		// Panel picks up the new values straight after, on this same tick
+		progressRefresher.markDirty();
+		metrics.increment(PluginMetrics.Counter.TICKS_SETTLED);
+	}
 
-		// Copy to clipboard
-		StringSelection selection = new StringSelection(code);
-		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
+	/**
+	 * Cashes out coins on the ledger thread: reserves the coins, signs the codes and journals
+	 * them, then copies them and shows them on the EDT.
+	 *
+	 * @return completes once the player has been shown the result, successful or not
+	 */
+	private CompletableFuture<Void> cashOutSilverCoins(int amount, int count)
+	{
+		final long start = metrics.startTimer();
+		return CompletableFuture.supplyAsync(() ->
+			{
+				List<String> codes = issueCodes(amount, count);
+				metrics.stopTimer(PluginMetrics.Timer.CASH_OUT, start);
+				return codes;
+			}, ledgerExecutor)
+			.thenAcceptAsync(codes ->
+			{
+				if (codes == null)
+				{
+					return;
+				}
+
+				// The codes are committed, so they are shown even if the clipboard is unavailable
+				boolean copied = RuneCCGPanel.copyToClipboard(String.join("\n", codes));
+				if (codes.size() == 1)
+				{
+					panel.showCodeDialog(codes.get(0), copied);
+				}
+				else
+				{
+					panel.showCodesDialog(codes, copied);
+				}
+			}, this::runOnEdt)
+			.exceptionally(e ->
+			{
+				log.error("Cash out failed", e);
+				showCashOutFailed("Something went wrong while cashing out, check your Silver Coin balance.");
+				return null;
+			});
+	}
 
-		// Show dialog
-		SwingUtilities.invokeLater(() -> panel.showCodeDialog(code));
+	/**
+	 * Exports the loaded profile's awards and codes on the export thread, so neither the EDT
+	 * nor the client thread waits on the journal or the file.
+	 *
+	 * @return completes once the player has been shown the result, successful or not
+	 */
+	private CompletableFuture<Void> exportHistory(Path file, LedgerExport.Format format)
+	{
+		final String profile = ledger.getProfileKey();
+		if (profile == null)
+		{
+			showExportFailed("Log in to export your history.");
+			return CompletableFuture.completedFuture(null);
+		}
 
-		log.info("Cashed out {} Silver Coins. Code: {}", amount, code);
+		return CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					return ledgerExport.export(profile, file, format);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}, exportExecutor)
+			.thenAcceptAsync(rows ->
+				JOptionPane.showMessageDialog(panel,
+						"Exported " + rows + " records to " + file,
+						"Export History",
+						JOptionPane.INFORMATION_MESSAGE), this::runOnEdt)
+			.exceptionally(e ->
+			{
+				log.error("Failed to export history to {}", file, e);
+				showExportFailed("Could not write " + file + ".");
+				return null;
+			});
 	}
 
-	private String encodeCoins(int amount)
+	/**
+	 * Deducts the coins for a cash-out and signs its codes, handing the coins back if signing fails.
+	 *
+	 * @return the journaled codes, or null if the cash-out was refused and the player told why
+	 */
+	private List<String> issueCodes(int amount, int count)
 	{
-		try
+		long total = (long) amount * count;
+
+		// Reserve the whole cash-out at once, then hand back the coins if signing fails
+		CoinLedger.Reservation reservation = total <= Integer.MAX_VALUE ? ledger.reserve((int) total) : null;
+		if (reservation == null)
 		{
-			// Generate a random nonce (8 bytes)
-			SecureRandom random = new SecureRandom();
-			byte[] nonce = new byte[8];
-			random.nextBytes(nonce);
-
-			// Get current timestamp (seconds since epoch)
-			long timestamp = System.currentTimeMillis() / 1000;
-
-			// Create payload: nonce (8 bytes) + timestamp (8 bytes) + amount (4 bytes)
-			ByteBuffer buffer = ByteBuffer.allocate(20);
-			buffer.put(nonce);
-			buffer.putLong(timestamp);
-			buffer.putInt(amount);
-			byte[] payload = buffer.array();
-
-			// Calculate HMAC-SHA256 signature
-			Mac hmac = Mac.getInstance("HmacSHA256");
-			SecretKeySpec secretKeySpec = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-			hmac.init(secretKeySpec);
-			byte[] signature = hmac.doFinal(payload);
-
-			// Take first 16 bytes of signature for compactness
-			byte[] signatureTruncated = new byte[16];
-			System.arraycopy(signature, 0, signatureTruncated, 0, 16);
-
-			// Final code: payload (20 bytes) + signature (16 bytes) = 36 bytes
-			ByteBuffer finalBuffer = ByteBuffer.allocate(36);
-			finalBuffer.put(payload);
-			finalBuffer.put(signatureTruncated);
-
-			// Base64 encode (36 bytes -> 48 characters)
-			return Base64.getEncoder().encodeToString(finalBuffer.array());
+			showInsufficientFunds(ledger.getTotalCoins(), total);
+			return null;
 		}
-		catch (Exception e)
+
+		List<String> codes = count == 1 ? singletonOrNull(codeSigner.encode(amount)) : codeSigner.encodeBatch(amount, count);
+		if (codes == null)
 		{
-			log.error("Error encoding coins", e);
+			reservation.rollback();
+			progressRefresher.publish();
+			showCashOutFailed("Failed to generate codes, no Silver Coins were deducted.");
 			return null;
 		}
+
+		// Make sure the codes are journaled before anyone sees them
+		if (!reservation.commit(codes, amount))
+		{
+			progressRefresher.publish();
+			showCashOutFailed("Failed to record the cash-out, no Silver Coins were deducted.");
+			return null;
+		}
+		progressRefresher.publish();
+
+		metrics.increment(PluginMetrics.Counter.CASH_OUTS);
+		log.info("Cashed out {} code(s) of {} Silver Coins", count, amount);
+		return codes;
 	}
 
-	private boolean isEventWorld()
+	/**
+	 * Waits for the profile loads and cash-outs queued so far to finish.
+	 */
+	void awaitLedger() throws InterruptedException, ExecutionException
 	{
-		EnumSet<WorldType> worldType = client.getWorldType();
-		return worldType.stream()
-				.anyMatch(type -> type == WorldType.SEASONAL ||
-						type == WorldType.DEADMAN ||
-						type == WorldType.QUEST_SPEEDRUNNING ||
-						type == WorldType.TOURNAMENT_WORLD ||
-						type == WorldType.FRESH_START_WORLD ||
-						type == WorldType.BETA_WORLD ||
-						type == WorldType.NOSAVE_MODE);
+		ledgerExecutor.submit(() -> { }).get();
 	}
 
-	private void checkEventWorld()
+	private static ExecutorService newWorker(String name)
 	{
-		if (!isEventWorld())
-		{
-			// Normal world — nothing to confirm, allow XP tracking immediately
-			userConfirmedEventWorld = true;
-			return;
-		}
-		if (eventWorldPromptShown)
+		ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, WORKER_IDLE_SECONDS, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r ->
+			{
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		worker.allowCoreThreadTimeOut(true);
+		return worker;
+	}
+
+	private void runOnEdt(Runnable runnable)
+	{
+		metrics.increment(PluginMetrics.Counter.EDT_POSTS);
+		SwingUtilities.invokeLater(runnable);
+	}
+
+	private static List<String> singletonOrNull(String code)
+	{
+		return code != null ? Collections.singletonList(code) : null;
+	}
+
+	private void showCashOutFailed(String message)
+	{
+		runOnEdt(() ->
+				JOptionPane.showMessageDialog(panel,
+						message,
+						"Cash Out Failed",
+						JOptionPane.ERROR_MESSAGE)
+		);
+	}
+
+	private void showExportFailed(String message)
+	{
+		runOnEdt(() ->
+				JOptionPane.showMessageDialog(panel,
+						message,
+						"Export Failed",
+						JOptionPane.ERROR_MESSAGE)
+		);
+	}
+
+	private void showInsufficientFunds(int currentCoins, long requested)
+	{
+		runOnEdt(() ->
+				JOptionPane.showMessageDialog(panel,
+						"Insufficient Silver Coins!\nYou have: " + currentCoins + "\nRequested: " + requested,
+						"Insufficient Funds",
+						JOptionPane.ERROR_MESSAGE)
+		);
+	}
+
+	/**
+	 * Compiles the coin rules from the config. Only the plugin's own field changes, so events
+	 * being weighed at the same time see either the old rules or the new ones.
+	 */
+	private void applyRules()
+	{
+		rules = CoinRules.parse(config.skillWeights(), config.worldMultipliers());
+		ledger.setDailyCoinCap(config.dailyCoinCap());
+	}
+
+	/**
+	 * Reads the world's types once and works out whether XP gained on it counts, asking the
+	 * player to opt in on event worlds. Called again on every LOGGED_IN, which follows each
+	 * loading screen, so the prompt is shown again after the panel has been re-enabled.
+	 */
+	private void enterWorld()
+	{
+		worldMask = CoinRules.mask(client.getWorldType());
+		worldRow = CoinRules.row(worldMask);
+		if (eligibility.enter(worldMask, rules.isExcluded(worldRow)) != WorldEligibility.State.AWAITING_CONFIRMATION)
 		{
 			return;
 		}
-		eventWorldPromptShown = true;
 
-		SwingUtilities.invokeLater(() ->
+		final int mask = worldMask;
+		runOnEdt(() ->
 			panel.showEventWorldWarning(() -> {
-				userConfirmedEventWorld = true;
-				previousXpMap.clear(); // Clear the map so XP tracking starts fresh
-				panel.rebuildNormalUI();
-				panel.updateProgress(getCurrentXp(), getTotalCoins());
+				if (eligibility.confirm(mask))
+				{
+					panel.showNormalView();
+					progressRefresher.publish();
+				}
 			})
 		);
 	}
@@ -0,0 +1,105 @@
+package com.runeccg;
+
+/**
+ * Whether XP gained on the current world counts towards Silver Coins.
+ * <p>
+ * Event worlds, those with any of {@link CoinRules#WORLD_TYPES}, only count once the player has
+ * opted in. The choice is remembered for each world type until the plugin stops, so hopping
+ * between worlds of types already accepted does not ask again. A world's types are reduced to
+ * a bitmask once when it is entered, and each transition passes the outcome on to the
+ * {@link XpTracker}, so the hot path only reads the tracker's flag.
+ * <p>
+ * Transitions happen on the client thread, apart from {@link #confirm} which comes from the EDT,
+ * so they are synchronized.
+ */
+final class WorldEligibility
+{
+	enum State
+	{
+		// Not in a world
+		OFFLINE,
+		// XP counts towards coins
+		ELIGIBLE,
+		// On an event world with a type the player has not opted in to
+		AWAITING_CONFIRMATION,
+		// The coin rules count nothing on this world, so there is nothing to opt in to
+		EXCLUDED,
+	}
+
+	private final XpTracker xpTracker;
+	private State state = State.OFFLINE;
+	// Types of the world being played, as a CoinRules mask
+	private int worldMask;
+	// Types the player has opted in to
+	private int confirmedMask;
+
+	WorldEligibility(XpTracker xpTracker)
+	{
+		this.xpTracker = xpTracker;
+	}
+
+	synchronized State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Enters a world, or re-evaluates the current one when the world or the rules change.
+	 *
+	 * @param mask the world's types, from {@link CoinRules#mask}
+	 * @param excluded whether the coin rules count nothing on the world
+	 * @return the new state
+	 */
+	synchronized State enter(int mask, boolean excluded)
+	{
+		worldMask = mask;
+		if (excluded)
+		{
+			return transition(State.EXCLUDED);
+		}
+		return transition((mask & ~confirmedMask) == 0 ? State.ELIGIBLE : State.AWAITING_CONFIRMATION);
+	}
+
+	/**
+	 * Opts in to every type of the world the prompt was shown for.
+	 *
+	 * @param mask the world's types when the prompt was shown
+	 * @return false if the player has since moved on to a world of other types, so nothing changed
+	 */
+	synchronized boolean confirm(int mask)
+	{
+		if (state != State.AWAITING_CONFIRMATION || worldMask != mask)
+		{
+			return false;
+		}
+
+		confirmedMask |= mask;
+		transition(State.ELIGIBLE);
+		return true;
+	}
+
+	/**
+	 * Leaves the world on logout or hop. Decisions made so far are kept.
+	 */
+	synchronized void leave()
+	{
+		worldMask = 0;
+		transition(State.OFFLINE);
+	}
+
+	/**
+	 * Leaves the world and forgets every decision, for when the plugin stops.
+	 */
+	synchronized void reset()
+	{
+		confirmedMask = 0;
+		leave();
+	}
+
+	private State transition(State next)
+	{
+		state = next;
+		xpTracker.setEligible(next == State.ELIGIBLE);
+		return next;
+	}
+}
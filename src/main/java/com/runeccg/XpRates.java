@@ -0,0 +1,224 @@
+package com.runeccg;
+
+import java.util.Arrays;
+import net.runelite.api.Skill;
+
+/**
+ * XP per hour of every skill and in total, over the last five minutes, the last hour and the
+ * whole session. The plugin records XP as counted towards coins, after the skill weights and
+ * world multipliers, so the rates are shown as counted XP.
+ * <p>
+ * The two sliding windows are rings of fixed time buckets holding the XP gained in each skill,
+ * with a running sum per skill that buckets are subtracted from as they fall out of the window.
+ * Recording a gain and reading a rate are O(1), nothing is allocated after construction, and
+ * memory does not grow however long the session runs. Only used on the client thread.
+ */
+final class XpRates
+{
+	enum Window
+	{
+		FIVE_MINUTES("5 min"),
+		HOUR("1 hour"),
+		SESSION("Session");
+
+		private final String label;
+
+		Window(String label)
+		{
+			this.label = label;
+		}
+
+		@Override
+		public String toString()
+		{
+			return label;
+		}
+	}
+
+	// Column of each bucket, and of the running sums, holding the total of every skill
+	static final int TOTAL = Skill.values().length;
+
+	private static final long HOUR_MILLIS = 3_600_000;
+	// Rates are not extrapolated from less than this, so the first drop is not worth millions an hour
+	private static final long MIN_ELAPSED_MILLIS = 60_000;
+
+	private final Ring fiveMinutes = new Ring(5_000, 60);
+	private final Ring hour = new Ring(60_000, 60);
+	private final long[] sessionXp = new long[TOTAL + 1];
+	private long sessionStart;
+
+	/**
+	 * Starts counting a new session, forgetting everything recorded before.
+	 */
+	void startSession(long now)
+	{
+		fiveMinutes.clear();
+		hour.clear();
+		Arrays.fill(sessionXp, 0);
+		sessionStart = now;
+	}
+
+	void endSession()
+	{
+		sessionStart = 0;
+	}
+
+	boolean isSessionStarted()
+	{
+		return sessionStart != 0;
+	}
+
+	void record(Skill skill, int xp, long now)
+	{
+		if (sessionStart == 0)
+		{
+			return;
+		}
+
+		final int column = skill.ordinal();
+		fiveMinutes.add(column, xp, now);
+		hour.add(column, xp, now);
+		sessionXp[column] += xp;
+		sessionXp[TOTAL] += xp;
+	}
+
+	/**
+	 * @param column a skill ordinal, or {@link #TOTAL}
+	 * @return the XP per hour gained over the window, 0 outside a session
+	 */
+	double getXpPerHour(Window window, int column, long now)
+	{
+		if (sessionStart == 0)
+		{
+			return 0;
+		}
+
+		final long xp;
+		final long elapsed;
+		switch (window)
+		{
+			case FIVE_MINUTES:
+				xp = fiveMinutes.sum(column, now);
+				elapsed = Math.min(fiveMinutes.span, now - sessionStart);
+				break;
+			case HOUR:
+				xp = hour.sum(column, now);
+				elapsed = Math.min(hour.span, now - sessionStart);
+				break;
+			default:
+				xp = sessionXp[column];
+				elapsed = now - sessionStart;
+				break;
+		}
+		return xp * (double) HOUR_MILLIS / Math.max(elapsed, MIN_ELAPSED_MILLIS);
+	}
+
+	/**
+	 * @return every rate at this moment, to hand to the panel
+	 */
+	Snapshot snapshot(long now)
+	{
+		Window[] windows = Window.values();
+		double[] xpPerHour = new double[windows.length * (TOTAL + 1)];
+		for (Window window : windows)
+		{
+			for (int column = 0; column <= TOTAL; column++)
+			{
+				xpPerHour[window.ordinal() * (TOTAL + 1) + column] = getXpPerHour(window, column, now);
+			}
+		}
+		return new Snapshot(xpPerHour);
+	}
+
+	/**
+	 * Rates of every window and column, taken at one point in time.
+	 */
+	static final class Snapshot
+	{
+		private final double[] xpPerHour;
+
+		private Snapshot(double[] xpPerHour)
+		{
+			this.xpPerHour = xpPerHour;
+		}
+
+		/**
+		 * @param column a skill ordinal, or {@link #TOTAL}
+		 */
+		double getXpPerHour(Window window, int column)
+		{
+			return xpPerHour[window.ordinal() * (TOTAL + 1) + column];
+		}
+	}
+
+	/**
+	 * XP gained per column in each of the last {@code buckets} time buckets. Buckets that
+	 * are reused are cleared as time moves on to them, so old gains never have to be removed one by one.
+	 */
+	private static final class Ring
+	{
+		private final long bucketMillis;
+		private final int buckets;
+		private final long span;
+		// buckets rows of TOTAL + 1 columns
+		private final long[] xp;
+		private final long[] sums = new long[TOTAL + 1];
+		// Number of the newest bucket since the epoch, in bucketMillis
+		private long current;
+
+		Ring(long bucketMillis, int buckets)
+		{
+			this.bucketMillis = bucketMillis;
+			this.buckets = buckets;
+			this.span = bucketMillis * buckets;
+			this.xp = new long[buckets * (TOTAL + 1)];
+		}
+
+		void clear()
+		{
+			Arrays.fill(xp, 0);
+			Arrays.fill(sums, 0);
+			current = 0;
+		}
+
+		void add(int column, int gained, long now)
+		{
+			advance(now);
+			final int row = (int) (current % buckets) * (TOTAL + 1);
+			xp[row + column] += gained;
+			xp[row + TOTAL] += gained;
+			sums[column] += gained;
+			sums[TOTAL] += gained;
+		}
+
+		long sum(int column, long now)
+		{
+			advance(now);
+			return sums[column];
+		}
+
+		/**
+		 * Clears every bucket that time has moved past, at most one full turn of the ring.
+		 */
+		private void advance(long now)
+		{
+			final long bucket = now / bucketMillis;
+			if (bucket <= current)
+			{
+				return;
+			}
+
+			final long expired = Math.min(bucket - current, buckets);
+			for (long b = bucket - expired + 1; b <= bucket; b++)
+			{
+				final int row = (int) (b % buckets) * (TOTAL + 1);
+				for (int column = 0; column <= TOTAL; column++)
+				{
+					sums[column] -= xp[row + column];
+					xp[row + column] = 0;
+				}
+			}
+			current = bucket;
+		}
+	}
+}
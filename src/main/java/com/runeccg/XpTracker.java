@@ -0,0 +1,142 @@
+package com.runeccg;
+
+import java.util.Arrays;
+import net.runelite.api.Skill;
+
+/**
+ * Turns the absolute experience values reported by StatChanged into XP gains.
+ * <p>
+ * The last seen experience of each skill is kept in a flat array indexed by
+ * {@link Skill#ordinal()}, and whether gains count towards coins is a single
+ * precomputed flag, so a steady stream of updates does not allocate anything.
+ * <p>
+ * That array is the baseline gains are measured from. It can be restored in bulk from a
+ * baseline saved for the profile, or seeded from the client's experience of every skill at
+ * once, so the first drop in a skill after a login or hop is not just used as a starting point.
+ */
+class XpTracker
+{
+	static final int UNSEEN = -1;
+
+	private final int[] previousXp = new int[Skill.values().length];
+	private volatile boolean eligible;
+	// Whether the baseline moved since it was last taken
+	private boolean changed;
+
+	XpTracker()
+	{
+		reset();
+	}
+
+	/**
+	 * Forgets every skill, so the next update of each one only sets its starting point.
+	 */
+	void reset()
+	{
+		Arrays.fill(previousXp, UNSEEN);
+		changed = false;
+	}
+
+	/**
+	 * Replaces the baseline with a saved one, indexed by {@link Skill#ordinal()}. Skills missing
+	 * from it are unseen, and a null baseline forgets every skill.
+	 */
+	void setBaseline(int[] baseline)
+	{
+		reset();
+		if (baseline != null)
+		{
+			System.arraycopy(baseline, 0, previousXp, 0, Math.min(baseline.length, previousXp.length));
+		}
+	}
+
+	/**
+	 * Starts every skill that has not been seen yet from the client's current experience.
+	 *
+	 * @param experience every skill's experience, as returned by {@code Client.getSkillExperiences()}
+	 * @return false if the client has not loaded the player's stats yet, so nothing was seeded
+	 */
+	boolean seedUnseen(int[] experience)
+	{
+		boolean loaded = false;
+		for (int xp : experience)
+		{
+			if (xp > 0)
+			{
+				loaded = true;
+				break;
+			}
+		}
+		if (!loaded)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < Math.min(experience.length, previousXp.length); i++)
+		{
+			if (previousXp[i] == UNSEEN)
+			{
+				previousXp[i] = experience[i];
+				changed = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a copy of the baseline if it moved since the last call, otherwise null
+	 */
+	int[] takeBaseline()
+	{
+		if (!changed)
+		{
+			return null;
+		}
+
+		changed = false;
+		return previousXp.clone();
+	}
+
+	boolean isEligible()
+	{
+		return eligible;
+	}
+
+	/**
+	 * Sets whether gains on the current world should be awarded. Updates received while
+	 * not eligible still move the starting point, so they are never awarded later.
+	 */
+	void setEligible(boolean eligible)
+	{
+		this.eligible = eligible;
+	}
+
+	/**
+	 * Records the current experience of a skill.
+	 *
+	 * @return the XP gained since the previous update of that skill, or 0 if this is the first
+	 * update, nothing was gained, or gains are currently not eligible
+	 */
+	int update(Skill skill, int xp)
+	{
+		final int index = skill.ordinal();
+		final int previous = previousXp[index];
+
+		if (previous == UNSEEN)
+		{
+			previousXp[index] = xp;
+			changed = true;
+			return 0;
+		}
+
+		final int gained = xp - previous;
+		if (gained <= 0)
+		{
+			return 0;
+		}
+
+		previousXp[index] = xp;
+		changed = true;
+		return eligible ? gained : 0;
+	}
+}
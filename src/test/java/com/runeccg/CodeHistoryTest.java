@@ -0,0 +1,96 @@
+package com.runeccg;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CodeHistoryTest
+{
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	private static final long START = LocalDate.of(2026, 3, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+	@Test
+	public void testFindByDate()
+	{
+		CodeHistory history = new CodeHistory();
+		// Three codes a day over ten days
+		for (int i = 0; i < 30; i++)
+		{
+			history.add(START + (i / 3) * DAY + (i % 3) * 1000, 10, code(i));
+		}
+
+		assertArrayEquals(new int[]{12, 13, 14}, history.findByDate(LocalDate.of(2026, 3, 5), ZoneOffset.UTC));
+		assertEquals(0, history.findByDate(LocalDate.of(2026, 2, 28), ZoneOffset.UTC).length);
+		assertEquals(0, history.findByDate(LocalDate.of(2026, 3, 11), ZoneOffset.UTC).length);
+	}
+
+	@Test
+	public void testFindByAmount()
+	{
+		CodeHistory history = new CodeHistory();
+		for (int i = 0; i < 50_000; i++)
+		{
+			history.add(START + i, i % 7 == 0 ? 500 : 25, code(i));
+		}
+
+		int[] rows = history.findByAmount(500);
+		assertEquals(7143, rows.length);
+		assertEquals(0, rows[0]);
+		assertEquals(49_994, rows[rows.length - 1]);
+		assertEquals(0, history.findByAmount(1).length);
+	}
+
+	@Test
+	public void testRedeemedAndClear()
+	{
+		CodeHistory history = new CodeHistory();
+		history.add(START, 10, code(1));
+		history.add(START, 20, code(2));
+
+		assertEquals(1, history.setRedeemed(code(2), true));
+		assertTrue(history.isRedeemed(1));
+		assertFalse(history.isRedeemed(0));
+		assertEquals(-1, history.setRedeemed(code(3), true));
+		assertArrayEquals(code(2), history.getCodeBytes(1));
+
+		history.clear();
+		assertEquals(0, history.size());
+		assertFalse(history.isRedeemed(1));
+		assertNull(history.getCode(1));
+	}
+
+	@Test
+	public void testCopyTo()
+	{
+		CodeHistory history = new CodeHistory();
+		for (int i = 0; i < 300; i++)
+		{
+			history.add(START + i, i % 2 == 0 ? 10 : 20, code(i));
+		}
+		history.setRedeemed(code(7), true);
+
+		CodeHistory copy = new CodeHistory();
+		copy.add(START, 99, code(1000));
+		history.copyTo(copy);
+		history.clear();
+
+		assertEquals(300, copy.size());
+		assertTrue(copy.isRedeemed(7));
+		assertFalse(copy.isRedeemed(8));
+		assertEquals(150, copy.findByAmount(20).length);
+		assertEquals(0, copy.findByAmount(99).length);
+		assertEquals(299, copy.setRedeemed(code(299), true));
+		assertEquals(-1, copy.setRedeemed(code(1000), true));
+	}
+
+	private static byte[] code(int nonce)
+	{
+		return ByteBuffer.allocate(CodeSigner.CODE_LENGTH).putLong(nonce).array();
+	}
+}
@@ -0,0 +1,212 @@
+package com.runeccg;
+
+import com.runeccg.verifier.CodeVerifier;
+import com.runeccg.verifier.NonceIndex;
+import com.runeccg.verifier.RedeemedLog;
+import com.runeccg.verifier.VerificationResult;
+import com.runeccg.verifier.VerifierCli;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodeVerifierTest
+{
+	private static final long MAX_AGE = 3600;
+	private static final long MAX_SKEW = 60;
+
+	private CodeSigner signer;
+	private CodeVerifier verifier;
+	private long now;
+
+	@Before
+	public void setUp()
+	{
+		signer = new CodeSigner();
+		verifier = new CodeVerifier(CodeSigner.SECRET_KEY.getBytes(StandardCharsets.UTF_8), MAX_AGE, MAX_SKEW, 1000);
+		now = System.currentTimeMillis() / 1000;
+	}
+
+	@Test
+	public void testSignedCodeIsValidOnce()
+	{
+		String code = signer.encode(250);
+
+		VerificationResult result = verifier.verify(code, now);
+		assertEquals(VerificationResult.Status.VALID, result.getStatus());
+		assertEquals(250, result.getAmount());
+
+		assertEquals(VerificationResult.Status.REPLAYED, verifier.verify(code, now).getStatus());
+	}
+
+	@Test
+	public void testBatchIsValidAndRepeatsAreReplays()
+	{
+		List<String> codes = signer.encodeBatch(10, 200);
+		List<VerificationResult> results = verifier.verifyAll(codes, now);
+		assertTrue(results.stream().allMatch(VerificationResult::isValid));
+
+		results = verifier.verifyAll(Arrays.asList(codes.get(0), codes.get(199)), now);
+		assertTrue(results.stream().noneMatch(VerificationResult::isValid));
+	}
+
+	@Test
+	public void testSmallBatchIsValid()
+	{
+		List<String> codes = signer.encodeBatch(3, 2);
+		assertEquals(2, codes.size());
+		assertTrue(verifier.verifyAll(codes, now).stream().allMatch(VerificationResult::isValid));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOversizedBatchIsRejected()
+	{
+		signer.encodeBatch(3, CodeSigner.MAX_BATCH_SIZE + 1);
+	}
+
+	@Test
+	public void testTamperedCodeIsRejected()
+	{
+		byte[] bytes = Base64.getDecoder().decode(signer.encode(5));
+		// Raise the amount without re-signing
+		bytes[19] = 100;
+
+		VerificationResult result = verifier.verify(Base64.getEncoder().encodeToString(bytes), now);
+		assertEquals(VerificationResult.Status.BAD_SIGNATURE, result.getStatus());
+	}
+
+	@Test
+	public void testTimeWindow()
+	{
+		String code = signer.encode(1);
+
+		assertEquals(VerificationResult.Status.EXPIRED, verifier.verify(code, now + MAX_AGE + 10).getStatus());
+		assertEquals(VerificationResult.Status.FROM_FUTURE, verifier.verify(code, now - MAX_SKEW - 10).getStatus());
+		// Rejected codes are not recorded as redeemed
+		assertEquals(VerificationResult.Status.VALID, verifier.verify(code, now).getStatus());
+	}
+
+	@Test
+	public void testMalformedCodes()
+	{
+		assertEquals(VerificationResult.Status.MALFORMED, verifier.verify(null, now).getStatus());
+		assertEquals(VerificationResult.Status.MALFORMED, verifier.verify("not a code", now).getStatus());
+		assertEquals(VerificationResult.Status.MALFORMED, verifier.verify("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!", now).getStatus());
+	}
+
+	@Test
+	public void testNonceIndexStaysExactBeyondItsBloomFilter()
+	{
+		NonceIndex index = new NonceIndex(3600, 60, 100);
+		for (long nonce = 0; nonce < 100; nonce++)
+		{
+			assertTrue(index.add(nonce, 0));
+		}
+		for (long nonce = 0; nonce < 100; nonce++)
+		{
+			assertFalse(index.add(nonce, 30));
+		}
+		// Same nonces in a different time bucket are different codes
+		assertTrue(index.add(5, 120));
+	}
+
+	@Test
+	public void testNonceIndexForgetsExpiredBuckets()
+	{
+		NonceIndex index = new NonceIndex(600, 60, 100);
+		assertTrue(index.add(42, 0));
+
+		// Reuses the ring slot of the first bucket
+		assertTrue(index.add(7, 60 * 12));
+		assertFalse(index.add(42, 0));
+	}
+
+	@Test
+	public void testCommandLineDefaultsFitInMemory()
+	{
+		// A year of hourly buckets sized for 100,000 codes each, as the command line sets it up
+		CodeVerifier defaults = VerifierCli.createVerifier(CodeSigner.SECRET_KEY.getBytes(StandardCharsets.UTF_8), 365);
+		String code = signer.encode(10);
+		assertEquals(VerificationResult.Status.VALID, defaults.verify(code, now).getStatus());
+		assertEquals(VerificationResult.Status.REPLAYED, defaults.verify(code, now).getStatus());
+
+		NonceIndex index = new NonceIndex(TimeUnit.DAYS.toSeconds(365), 3600, 100_000);
+		assertEquals(0, index.memoryBytes());
+		for (long nonce = 1; nonce <= 10_000; nonce++)
+		{
+			assertTrue(index.add(nonce, 0));
+		}
+		long filled = index.memoryBytes();
+		assertTrue(filled < 1 << 20);
+		for (long nonce = 1; nonce <= 10_000; nonce++)
+		{
+			assertFalse(index.add(nonce, 3599));
+		}
+
+		// The next hour starts out sized for what the last one received
+		assertTrue(index.add(1, 3600));
+		assertTrue(index.memoryBytes() <= 2 * filled + 1024);
+	}
+
+	@Test
+	public void testRedeemedCodesStayRedeemedAcrossRuns() throws IOException
+	{
+		byte[] key = CodeSigner.SECRET_KEY.getBytes(StandardCharsets.UTF_8);
+		String code = signer.encode(10);
+		Path file = Files.createTempFile("runeccg-redeemed", ".bin");
+		try
+		{
+			NonceIndex index = VerifierCli.createNonceIndex(365);
+			try (RedeemedLog redeemed = RedeemedLog.open(file, index))
+			{
+				VerificationResult result = VerifierCli.createVerifier(key, 365, index).verify(code, now);
+				assertEquals(VerificationResult.Status.VALID, result.getStatus());
+				redeemed.append(result.getNonce(), result.getTimestamp());
+			}
+			// Killed part way through writing the next record
+			Files.write(file, new byte[5], StandardOpenOption.APPEND);
+
+			index = VerifierCli.createNonceIndex(365);
+			try (RedeemedLog redeemed = RedeemedLog.open(file, index))
+			{
+				assertEquals(1, redeemed.getLoaded());
+				CodeVerifier restarted = VerifierCli.createVerifier(key, 365, index);
+				assertEquals(VerificationResult.Status.REPLAYED, restarted.verify(code, now).getStatus());
+
+				VerificationResult result = restarted.verify(signer.encode(10), now);
+				assertEquals(VerificationResult.Status.VALID, result.getStatus());
+				redeemed.append(result.getNonce(), result.getTimestamp());
+			}
+			// The torn record was cut off, so the new one starts where it did
+			assertEquals(2 * 2 * Long.BYTES, Files.size(file));
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testNonceIndexDropsExpiredBuckets()
+	{
+		NonceIndex index = new NonceIndex(600, 60, 100);
+		index.add(1, 0);
+		index.add(2, 60);
+		long twoBuckets = index.memoryBytes();
+
+		// Both first buckets are out of range once a bucket twelve minutes later arrives
+		index.add(3, 60 * 13);
+		assertTrue(index.memoryBytes() < twoBuckets);
+		assertFalse(index.add(4, 60));
+	}
+}
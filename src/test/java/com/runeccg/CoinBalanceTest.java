@@ -0,0 +1,131 @@
+package com.runeccg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CoinBalanceTest
+{
+	private static final int THREADS = 8;
+	private static final int OPERATIONS = 200_000;
+
+	@Test
+	public void testAwardConvertsXpToCoins()
+	{
+		CoinBalance balance = new CoinBalance(900, 5);
+
+		assertEquals(3, balance.award(2150));
+		assertEquals(50, CoinBalance.xp(balance.snapshot()));
+		assertEquals(8, CoinBalance.coins(balance.snapshot()));
+	}
+
+	@Test
+	public void testAwardNearIntegerLimitsSaturates()
+	{
+		// Largest weighed gain the plugin passes in, on top of almost a full coin of progress
+		CoinBalance balance = new CoinBalance(999, 0);
+		assertEquals(Integer.MAX_VALUE / 1000 + 1, balance.award(Integer.MAX_VALUE));
+		assertEquals((999 + Integer.MAX_VALUE % 1000) % 1000, CoinBalance.xp(balance.snapshot()));
+
+		balance = new CoinBalance(999, Integer.MAX_VALUE - 5);
+		assertEquals(5, balance.award(Integer.MAX_VALUE));
+		assertEquals(0, balance.award(Integer.MAX_VALUE));
+		assertEquals(Integer.MAX_VALUE, CoinBalance.coins(balance.snapshot()));
+		assertTrue(CoinBalance.xp(balance.snapshot()) >= 0);
+
+		balance.credit(10);
+		assertEquals(Integer.MAX_VALUE, CoinBalance.coins(balance.snapshot()));
+	}
+
+	@Test
+	public void testDebitNeverOverdraws()
+	{
+		CoinBalance balance = new CoinBalance(0, 10);
+
+		assertFalse(balance.tryDebit(11));
+		assertTrue(balance.tryDebit(10));
+		assertFalse(balance.tryDebit(1));
+		assertEquals(0, CoinBalance.coins(balance.snapshot()));
+	}
+
+	/**
+	 * Half the threads award XP while the other half reserve coins and hand some of them back,
+	 * as cash-outs that fail would. No coin or XP may be created or lost along the way.
+	 */
+	@Test
+	public void testConcurrentUpdatesConserveCoins() throws Exception
+	{
+		CoinBalance balance = new CoinBalance(0, 1_000);
+		AtomicLong xpAwarded = new AtomicLong();
+		AtomicLong coinsAwarded = new AtomicLong();
+		AtomicLong coinsSpent = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			List<Future<?>> workers = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++)
+			{
+				boolean awarder = t % 2 == 0;
+				workers.add(pool.submit(() ->
+				{
+					start.await();
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < OPERATIONS; i++)
+					{
+						if (awarder)
+						{
+							int xp = random.nextInt(1, 2_500);
+							coinsAwarded.addAndGet(balance.award(xp));
+							xpAwarded.addAndGet(xp);
+						}
+						else
+						{
+							int amount = random.nextInt(1, 5);
+							if (balance.tryDebit(amount))
+							{
+								if (random.nextBoolean())
+								{
+									balance.credit(amount);
+								}
+								else
+								{
+									coinsSpent.addAndGet(amount);
+								}
+							}
+						}
+
+						assertTrue(CoinBalance.coins(balance.snapshot()) >= 0);
+					}
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (Future<?> worker : workers)
+			{
+				worker.get();
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		long snapshot = balance.snapshot();
+		long xpPerCoin = CoinLedger.XP_PER_SILVER_COIN;
+		assertEquals(1_000 * xpPerCoin + xpAwarded.get() - coinsSpent.get() * xpPerCoin,
+			CoinBalance.coins(snapshot) * xpPerCoin + CoinBalance.xp(snapshot));
+		assertEquals(1_000 + coinsAwarded.get() - coinsSpent.get(), CoinBalance.coins(snapshot));
+	}
+}
@@ -0,0 +1,228 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoinJournalTest
+{
+	private static final String PROFILE = "rsprofile.abc123";
+	// Type, timestamp, balance and value, the code and the CRC
+	static final int CASH_OUT_LENGTH = 1 + Long.BYTES + 3 * Integer.BYTES + CodeSigner.CODE_LENGTH + Integer.BYTES;
+
+	private Path directory;
+	private CoinJournal journal;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("runeccg-journal");
+		journal = new CoinJournal(directory.toFile());
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		journal.close();
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testNewJournalIsEmpty()
+	{
+		assertNull(journal.open(PROFILE));
+	}
+
+	@Test
+	public void testReopenRecoversLastState() throws IOException
+	{
+		String code = new CodeSigner().encode(5);
+		assertNotNull(code);
+
+		journal.open(PROFILE);
+		journal.appendSnapshot(0, 10);
+		journal.appendAward(1500, 500, 11);
+		journal.appendCashOut(Base64.getDecoder().decode(code), 5, 500, 6);
+		journal.close();
+
+		JournalRecord last = new CoinJournal(directory.toFile()).open(PROFILE);
+		assertNotNull(last);
+		assertEquals(JournalRecord.CASH_OUT, last.getType());
+		assertEquals(500, last.getCurrentXp());
+		assertEquals(6, last.getTotalCoins());
+		assertEquals(5, last.getValue());
+		assertEquals(code, last.getCode());
+
+		List<String> codes = new ArrayList<>();
+		assertTrue(journal.readAll(PROFILE, r ->
+		{
+			if (r.getType() == JournalRecord.CASH_OUT)
+			{
+				codes.add(r.getCode());
+			}
+		}));
+		assertEquals(1, codes.size());
+		assertEquals(code, codes.get(0));
+	}
+
+	@Test
+	public void testTornRecordIsDiscarded() throws IOException
+	{
+		journal.open(PROFILE);
+		journal.appendSnapshot(0, 10);
+		journal.appendAward(200, 200, 10);
+		journal.appendAward(900, 100, 11);
+		journal.close();
+
+		// Cut the last record in half, as a crash during the write would
+		File file = directory.resolve(PROFILE + ".journal").toFile();
+		long length = file.length();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.setLength(length - 10);
+		}
+
+		JournalRecord last = journal.open(PROFILE);
+		assertNotNull(last);
+		assertEquals(200, last.getCurrentXp());
+		assertEquals(10, last.getTotalCoins());
+
+		// New records go after the last intact one
+		journal.appendAward(900, 100, 11);
+		journal.close();
+		last = journal.open(PROFILE);
+		assertEquals(100, last.getCurrentXp());
+		assertEquals(11, last.getTotalCoins());
+	}
+
+	@Test
+	public void testCorruptRecordEndsRecovery() throws IOException
+	{
+		journal.open(PROFILE);
+		journal.appendSnapshot(0, 10);
+		journal.appendAward(300, 300, 10);
+		journal.close();
+
+		File file = directory.resolve(PROFILE + ".journal").toFile();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			// Flip a byte of the second record's XP, so its checksum no longer matches
+			raf.seek(file.length() - 10);
+			raf.write(raf.read() ^ 0xFF);
+		}
+
+		JournalRecord last = journal.open(PROFILE);
+		assertEquals(JournalRecord.SNAPSHOT, last.getType());
+		assertEquals(10, last.getTotalCoins());
+	}
+
+	@Test
+	public void testCompactsOnlyWhenAwardsCanBeMerged() throws IOException
+	{
+		byte[] code = Base64.getDecoder().decode(new CodeSigner().encode(1));
+		Path file = directory.resolve(PROFILE + ".journal");
+
+		// Over the threshold with cash-outs alone, which compacting cannot shrink
+		journal.open(PROFILE);
+		for (int i = 0; i < 20_000; i++)
+		{
+			journal.appendCashOut(code, 1, 0, 20_000 - i);
+		}
+		journal.close();
+		Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+		long size = Files.size(file);
+
+		assertNotNull(journal.open(PROFILE));
+		journal.close();
+		assertEquals(fileKey, Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+		assertEquals(size, Files.size(file));
+
+		// A day of awards after them is merged into one record
+		journal.open(PROFILE);
+		for (int i = 1; i <= 20_000; i++)
+		{
+			journal.appendAward(1, i, 0);
+		}
+		journal.close();
+
+		JournalRecord last = journal.open(PROFILE);
+		journal.close();
+		assertEquals(20_000, last.getCurrentXp());
+		assertEquals(size + 25, Files.size(file));
+	}
+
+	@Test
+	public void testSyncReportsAJournalThatCannotBeWritten() throws IOException
+	{
+		assertFalse(journal.isWritable());
+
+		// A file where the directory should be makes opening fail
+		File blocked = directory.resolve("blocked").toFile();
+		assertTrue(blocked.createNewFile());
+		CoinJournal unwritable = new CoinJournal(blocked);
+		assertNull(unwritable.open(PROFILE));
+		assertFalse(unwritable.isWritable());
+
+		unwritable.appendSnapshot(0, 10);
+		assertFalse(unwritable.sync());
+
+		journal.open(PROFILE);
+		journal.appendSnapshot(0, 10);
+		assertTrue(journal.isWritable());
+		assertTrue(journal.sync());
+	}
+
+	@Test
+	public void testFailedSyncCutsOffRecordsThatReachedTheFile() throws IOException
+	{
+		FailingChannel[] opened = new FailingChannel[1];
+		CoinJournal failing = new CoinJournal(directory.toFile())
+		{
+			@Override
+			FileChannel openChannel(Path file) throws IOException
+			{
+				opened[0] = new FailingChannel(super.openChannel(file));
+				return opened[0];
+			}
+		};
+		Path file = directory.resolve(PROFILE + ".journal");
+		failing.open(PROFILE);
+		failing.appendSnapshot(0, 10);
+		assertTrue(failing.sync());
+		long synced = Files.size(file);
+
+		// The disk fills up halfway through the sync, after the cash-out is written in full
+		opened[0].writable = CASH_OUT_LENGTH;
+		failing.appendCashOut(Base64.getDecoder().decode(new CodeSigner().encode(5)), 5, 0, 5);
+		failing.appendAward(1500, 500, 5);
+		assertFalse(failing.sync());
+		assertFalse(failing.isWritable());
+
+		// Its code was never shown, so the coins must not come back spent
+		assertEquals(synced, Files.size(file));
+		JournalRecord last = journal.open(PROFILE);
+		assertNotNull(last);
+		assertEquals(JournalRecord.SNAPSHOT, last.getType());
+		assertEquals(10, last.getTotalCoins());
+	}
+}
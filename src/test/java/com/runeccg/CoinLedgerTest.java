@@ -0,0 +1,444 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.config.RuneScapeProfile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+
+public class CoinLedgerTest
+{
+	private static final String MAIN = "rsprofile.main";
+	private static final String ALT = "rsprofile.alt";
+	private static final int CASH_OUT_THREADS = 2;
+	private static final int CASH_OUTS = 200;
+	private static final int AWARDS_PER_LOGIN = 50;
+
+	private final Map<String, Object> config = new ConcurrentHashMap<>();
+	private volatile String profileKey;
+	private Path directory;
+	private ScheduledExecutorService executor;
+	private ConfigManager configManager;
+	private CodeSigner signer;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("runeccg-ledger");
+		executor = Executors.newSingleThreadScheduledExecutor();
+		signer = new CodeSigner();
+		List<RuneScapeProfile> profiles = new ArrayList<>();
+		for (String key : new String[]{MAIN, ALT})
+		{
+			profiles.add(mock(RuneScapeProfile.class, invocation -> invocation.getMethod().getName().equals("getKey") ? key : null));
+		}
+		configManager = mock(ConfigManager.class, invocation ->
+		{
+			switch (invocation.getMethod().getName())
+			{
+				case "getRSProfileKey":
+					return profileKey;
+				case "getRSProfiles":
+					return profiles;
+				case "getConfiguration":
+					return invocation.getArguments().length == 4 ? config.get(invocation.getArgument(1) + "." + invocation.getArgument(2)) : null;
+				case "setConfiguration":
+					if (invocation.getArguments().length == 4)
+					{
+						config.put(invocation.getArgument(1) + "." + invocation.getArgument(2), invocation.getArgument(3));
+					}
+					return null;
+				case "unsetConfiguration":
+					if (invocation.getArguments().length == 3)
+					{
+						config.remove(invocation.getArgument(1) + "." + invocation.getArgument(2));
+					}
+					return null;
+				default:
+					return null;
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		executor.shutdownNow();
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testLegacyKeysAreMigratedToOneRecord()
+	{
+		config.put(MAIN + ".currentXp", 250);
+		config.put(MAIN + ".totalCoins", 7);
+		config.put(MAIN + ".skillXp", "100,200");
+
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile()));
+		login(ledger, MAIN);
+		assertEquals(250, ledger.getCurrentXp());
+		assertEquals(7, ledger.getTotalCoins());
+		assertArrayEquals(new int[]{100, 200}, ledger.getSkillBaseline());
+
+		// Written straight away, with the old keys gone
+		LedgerRecord record = LedgerRecord.decode((String) config.get(MAIN + ".ledger"));
+		assertEquals(250, record.getCurrentXp());
+		assertEquals(7, record.getTotalCoins());
+		assertArrayEquals(new int[]{100, 200}, record.getSkillXp());
+		assertFalse(config.containsKey(MAIN + ".currentXp"));
+		assertFalse(config.containsKey(MAIN + ".totalCoins"));
+		assertFalse(config.containsKey(MAIN + ".skillXp"));
+		ledger.unload();
+
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		login(restarted, MAIN);
+		assertEquals(250, restarted.getCurrentXp());
+		assertEquals(7, restarted.getTotalCoins());
+		assertArrayEquals(new int[]{100, 200}, restarted.getSkillBaseline());
+		restarted.unload();
+	}
+
+	@Test
+	public void testAwardSpendFlushUnloadRoundTrip()
+	{
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile()));
+		login(ledger, MAIN);
+		ledger.award(2500);
+
+		CoinLedger.Reservation reservation = ledger.reserve(1);
+		assertNotNull(reservation);
+		assertTrue(reservation.commit(Collections.singletonList(signer.encode(1)), 1));
+		ledger.flush();
+
+		LedgerRecord record = LedgerRecord.decode((String) config.get(MAIN + ".ledger"));
+		assertEquals(500, record.getCurrentXp());
+		assertEquals(1, record.getTotalCoins());
+
+		ledger.award(600);
+		ledger.unload();
+
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		login(restarted, MAIN);
+		assertEquals(100, restarted.getCurrentXp());
+		assertEquals(2, restarted.getTotalCoins());
+		assertEquals(1, restarted.getHistory().size());
+		assertEquals(1, restarted.getHistory().getAmount(0));
+		restarted.unload();
+	}
+
+	@Test
+	public void testCommitAfterProfileSwitchIsJournaledToItsOwner()
+	{
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile()));
+		login(ledger, MAIN);
+		ledger.award(5000);
+
+		CoinLedger.Reservation reservation = ledger.reserve(3);
+		assertNotNull(reservation);
+		login(ledger, ALT);
+		assertTrue(reservation.commit(Collections.singletonList(signer.encode(3)), 3));
+
+		login(ledger, MAIN);
+		assertEquals(2, ledger.getTotalCoins());
+		assertEquals(1, ledger.getHistory().size());
+		ledger.unload();
+
+		// Config and journal agree on the spent coins, so they cannot be cashed out again
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		login(restarted, MAIN);
+		assertEquals(2, restarted.getTotalCoins());
+		assertEquals(1, restarted.getHistory().size());
+		restarted.unload();
+	}
+
+	@Test
+	public void testRollbackAfterProfileSwitchRestoresItsOwner()
+	{
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile()));
+		login(ledger, MAIN);
+		ledger.award(5000);
+
+		CoinLedger.Reservation reservation = ledger.reserve(3);
+		// Journaled with the coins taken out
+		ledger.award(10);
+		login(ledger, ALT);
+		reservation.rollback();
+		ledger.unload();
+
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		login(restarted, MAIN);
+		assertEquals(5, restarted.getTotalCoins());
+		assertEquals(10, restarted.getCurrentXp());
+		restarted.unload();
+	}
+
+	@Test
+	public void testCommitIsRefusedWhenTheJournalCannotBeWritten() throws IOException
+	{
+		// A file where the journal directory should be makes every write fail
+		File blocked = directory.resolve("blocked").toFile();
+		assertTrue(blocked.createNewFile());
+		CoinLedger ledger = newLedger(new CoinJournal(blocked));
+		login(ledger, MAIN);
+		ledger.award(5000);
+
+		CoinLedger.Reservation reservation = ledger.reserve(3);
+		List<String> codes = Collections.singletonList(signer.encode(3));
+		assertFalse(reservation.commit(codes, 3));
+		assertEquals(5, ledger.getTotalCoins());
+		assertEquals(0, ledger.getHistory().size());
+		ledger.unload();
+	}
+
+	@Test
+	public void testFailedCommitLeavesNeitherCodesNorDebitOnDisk()
+	{
+		FailingChannel[] opened = new FailingChannel[1];
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile())
+		{
+			@Override
+			FileChannel openChannel(Path file) throws IOException
+			{
+				opened[0] = new FailingChannel(super.openChannel(file));
+				return opened[0];
+			}
+		});
+		login(ledger, MAIN);
+		ledger.award(5000);
+
+		CoinLedger.Reservation reservation = ledger.reserve(2);
+		// The debit is on disk, then the disk fills up after the first of the two codes
+		ledger.flush();
+		opened[0].writable = CoinJournalTest.CASH_OUT_LENGTH;
+		assertFalse(reservation.commit(Arrays.asList(signer.encode(1), signer.encode(1)), 1));
+		assertEquals(5, ledger.getTotalCoins());
+		ledger.unload();
+
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		login(restarted, MAIN);
+		assertEquals(5, restarted.getTotalCoins());
+		assertEquals(0, restarted.getHistory().size());
+		restarted.unload();
+	}
+
+	@Test
+	public void testProgressIsSyncedWithoutWritingConfig() throws IOException
+	{
+		// Keeps scheduled tasks to run them by hand
+		List<Runnable> scheduled = new ArrayList<>();
+		ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class, invocation ->
+		{
+			if (invocation.getMethod().getName().equals("schedule"))
+			{
+				scheduled.add(invocation.getArgument(0));
+			}
+			return null;
+		});
+		CoinLedger ledger = new CoinLedger(configManager, scheduler, new CoinJournal(directory.toFile()), new PluginMetrics(false));
+		login(ledger, MAIN);
+		ledger.award(999);
+
+		assertEquals(1, scheduled.size());
+		scheduled.get(0).run();
+
+		// On disk for a client killed right now, read back without going through the open journal
+		int[] progress = new int[1];
+		assertTrue(new CoinJournal(directory.toFile()).readAll(MAIN, r -> progress[0] = r.getCurrentXp()));
+		assertEquals(999, progress[0]);
+		assertTrue(config.isEmpty());
+	}
+
+	@Test
+	public void testPrefetchOnlyRereadsChangedJournals() throws Exception
+	{
+		AtomicInteger reads = new AtomicInteger();
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile())
+		{
+			@Override
+			boolean readAll(String profileKey, Consumer<JournalRecord> visitor) throws IOException
+			{
+				reads.incrementAndGet();
+				return super.readAll(profileKey, visitor);
+			}
+		});
+		login(ledger, MAIN);
+		ledger.award(5000);
+		login(ledger, ALT);
+		reads.set(0);
+
+		// Cached when switched away from, with nothing written to it since
+		prefetch(ledger);
+		assertEquals(0, reads.get());
+
+		// Written to by something else, the same balance so the journal still agrees with config
+		CoinJournal other = new CoinJournal(directory.toFile());
+		other.open(MAIN);
+		other.appendSnapshot(0, 5);
+		other.close();
+		prefetch(ledger);
+		assertEquals(1, reads.get());
+
+		prefetch(ledger);
+		assertEquals(1, reads.get());
+		login(ledger, MAIN);
+		assertEquals(5, ledger.getTotalCoins());
+		ledger.unload();
+	}
+
+	/**
+	 * One thread plays the client thread, awarding XP and switching between two profiles, while
+	 * others cash out and either commit or roll back. Afterwards the two profiles, read back
+	 * from config and their journals, must hold exactly the XP awarded less the coins committed,
+	 * and a history entry for every committed code.
+	 */
+	@Test
+	public void testConcurrentCashOutsAcrossProfileSwitchesConserveCoins() throws Exception
+	{
+		CoinLedger ledger = newLedger(new CoinJournal(directory.toFile()));
+		login(ledger, MAIN);
+		AtomicLong xpAwarded = new AtomicLong();
+		AtomicLong coinsCommitted = new AtomicLong();
+		AtomicInteger codesCommitted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch cashOutsDone = new CountDownLatch(CASH_OUT_THREADS);
+
+		ExecutorService pool = Executors.newFixedThreadPool(CASH_OUT_THREADS + 1);
+		try
+		{
+			List<Future<?>> workers = new ArrayList<>();
+			workers.add(pool.submit(() ->
+			{
+				start.await();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 1; cashOutsDone.getCount() > 0; i++)
+				{
+					int xp = random.nextInt(1, 2_500);
+					ledger.award(xp);
+					xpAwarded.addAndGet(xp);
+					if (i % AWARDS_PER_LOGIN == 0)
+					{
+						login(ledger, MAIN.equals(profileKey) ? ALT : MAIN);
+					}
+				}
+				return null;
+			}));
+
+			for (int t = 0; t < CASH_OUT_THREADS; t++)
+			{
+				workers.add(pool.submit(() ->
+				{
+					start.await();
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					try
+					{
+						for (int i = 0; i < CASH_OUTS; )
+						{
+							int amount = random.nextInt(1, 5);
+							CoinLedger.Reservation reservation = ledger.reserve(amount);
+							if (reservation == null)
+							{
+								// Wait for the client thread to award enough
+								Thread.yield();
+								continue;
+							}
+
+							i++;
+
+							if (random.nextBoolean())
+							{
+								reservation.rollback();
+							}
+							else if (reservation.commit(Collections.singletonList(signer.encode(amount)), amount))
+							{
+								coinsCommitted.addAndGet(amount);
+								codesCommitted.incrementAndGet();
+							}
+						}
+					}
+					finally
+					{
+						cashOutsDone.countDown();
+					}
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (Future<?> worker : workers)
+			{
+				worker.get();
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		ledger.unload();
+
+		long xpPerCoin = CoinLedger.XP_PER_SILVER_COIN;
+		long heldXp = 0;
+		int codes = 0;
+		CoinLedger restarted = newLedger(new CoinJournal(directory.toFile()));
+		for (String key : new String[]{MAIN, ALT})
+		{
+			login(restarted, key);
+			assertTrue(restarted.getTotalCoins() >= 0);
+			heldXp += restarted.getTotalCoins() * xpPerCoin + restarted.getCurrentXp();
+			codes += restarted.getHistory().size();
+		}
+		restarted.unload();
+
+		assertTrue(codesCommitted.get() > 0);
+		assertEquals(xpAwarded.get() - coinsCommitted.get() * xpPerCoin, heldXp);
+		assertEquals(codesCommitted.get(), codes);
+	}
+
+	private CoinLedger newLedger(CoinJournal journal)
+	{
+		return new CoinLedger(configManager, executor, journal, new PluginMetrics(false));
+	}
+
+	private void prefetch(CoinLedger ledger) throws Exception
+	{
+		ledger.prefetch();
+		// Runs after the prefetch on the single thread
+		executor.submit(() -> null).get();
+	}
+
+	private void login(CoinLedger ledger, String key)
+	{
+		profileKey = key;
+		ledger.load();
+	}
+}
@@ -0,0 +1,77 @@
+package com.runeccg;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CoinRulesTest
+{
+	private static final int NORMAL = CoinRules.row(EnumSet.of(WorldType.MEMBERS));
+
+	@Test
+	public void testEverythingCountsByDefault()
+	{
+		for (Skill skill : Skill.values())
+		{
+			assertEquals(CoinRules.ONE, CoinRules.DEFAULT.factor(NORMAL, skill));
+		}
+		assertFalse(CoinRules.DEFAULT.isExcluded(CoinRules.row(EnumSet.of(WorldType.SEASONAL))));
+	}
+
+	@Test
+	public void testSkillWeights()
+	{
+		CoinRules rules = CoinRules.parse("Attack=50, construction = 0%, Runecraft=250", null);
+
+		assertEquals(CoinRules.ONE / 2, rules.factor(NORMAL, Skill.ATTACK));
+		assertEquals(0, rules.factor(NORMAL, Skill.CONSTRUCTION));
+		// Capped at full, rules never inflate XP
+		assertEquals(CoinRules.ONE, rules.factor(NORMAL, Skill.RUNECRAFT));
+		assertEquals(CoinRules.ONE, rules.factor(NORMAL, Skill.MINING));
+		assertFalse(rules.isExcluded(NORMAL));
+	}
+
+	@Test
+	public void testWorldMultipliersCombineWithWeights()
+	{
+		CoinRules rules = CoinRules.parse("Attack=50", "Seasonal=50, Fresh start world=0");
+
+		int seasonal = CoinRules.row(EnumSet.of(WorldType.MEMBERS, WorldType.SEASONAL));
+		assertEquals(CoinRules.ONE / 4, rules.factor(seasonal, Skill.ATTACK));
+		assertEquals(CoinRules.ONE / 2, rules.factor(seasonal, Skill.MINING));
+		assertFalse(rules.isExcluded(seasonal));
+
+		// Excluded however the world's other types are weighed
+		int freshStart = CoinRules.row(EnumSet.of(WorldType.SEASONAL, WorldType.FRESH_START_WORLD));
+		assertEquals(0, rules.factor(freshStart, Skill.MINING));
+		assertTrue(rules.isExcluded(freshStart));
+	}
+
+	@Test
+	public void testBadEntriesAreSkipped()
+	{
+		CoinRules rules = CoinRules.parse("Woodcuting=10, Attack, Mining=lots, Fishing=20", "Deadman=-5");
+
+		assertEquals(CoinRules.ONE, rules.factor(NORMAL, Skill.ATTACK));
+		assertEquals(CoinRules.ONE, rules.factor(NORMAL, Skill.MINING));
+		assertEquals(CoinRules.ONE / 5, rules.factor(NORMAL, Skill.FISHING));
+		// Clamped to 0
+		assertTrue(rules.isExcluded(CoinRules.row(EnumSet.of(WorldType.DEADMAN))));
+	}
+
+	@Test
+	public void testFactorsAreCappedAtOne()
+	{
+		int[] worldPercent = new int[CoinRules.WORLD_TYPES.length];
+		Arrays.fill(worldPercent, 1000);
+		CoinRules rules = CoinRules.compile(new int[]{1000}, worldPercent);
+
+		int every = CoinRules.row(EnumSet.of(CoinRules.WORLD_TYPES[0], CoinRules.WORLD_TYPES));
+		assertEquals(CoinRules.ONE, rules.factor(every, Skill.values()[0]));
+	}
+}
@@ -0,0 +1,143 @@
+package com.runeccg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes through to a real file until it has written {@link #writable} bytes, then fails
+ * like a full disk.
+ */
+final class FailingChannel extends FileChannel
+{
+	private final FileChannel channel;
+	long writable = Long.MAX_VALUE;
+
+	FailingChannel(FileChannel channel)
+	{
+		this.channel = channel;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException
+	{
+		if (writable <= 0)
+		{
+			throw new IOException("No space left on device");
+		}
+
+		ByteBuffer part = src.duplicate();
+		part.limit(part.position() + (int) Math.min(part.remaining(), writable));
+		int written = channel.write(part);
+		src.position(src.position() + written);
+		writable -= written;
+		return written;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+	{
+		long written = 0;
+		for (int i = offset; i < offset + length; i++)
+		{
+			written += write(srcs[i]);
+		}
+		return written;
+	}
+
+	@Override
+	public int write(ByteBuffer src, long position) throws IOException
+	{
+		throw new IOException("Positional writes are not used by the journal");
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException
+	{
+		return channel.read(dst);
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+	{
+		return channel.read(dsts, offset, length);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long position) throws IOException
+	{
+		return channel.read(dst, position);
+	}
+
+	@Override
+	public long position() throws IOException
+	{
+		return channel.position();
+	}
+
+	@Override
+	public FileChannel position(long newPosition) throws IOException
+	{
+		channel.position(newPosition);
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException
+	{
+		return channel.size();
+	}
+
+	@Override
+	public FileChannel truncate(long size) throws IOException
+	{
+		channel.truncate(size);
+		return this;
+	}
+
+	@Override
+	public void force(boolean metaData) throws IOException
+	{
+		channel.force(metaData);
+	}
+
+	@Override
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+	{
+		return channel.transferTo(position, count, target);
+	}
+
+	@Override
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException
+	{
+		throw new IOException("Transfers into the journal are not used");
+	}
+
+	@Override
+	public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException
+	{
+		return channel.map(mode, position, size);
+	}
+
+	@Override
+	public FileLock lock(long position, long size, boolean shared) throws IOException
+	{
+		return channel.lock(position, size, shared);
+	}
+
+	@Override
+	public FileLock tryLock(long position, long size, boolean shared) throws IOException
+	{
+		return channel.tryLock(position, size, shared);
+	}
+
+	@Override
+	protected void implCloseChannel() throws IOException
+	{
+		channel.close();
+	}
+}
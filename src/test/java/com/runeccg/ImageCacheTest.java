@@ -0,0 +1,45 @@
+package com.runeccg;
+
+import java.awt.image.BufferedImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class ImageCacheTest
+{
+	@Test
+	public void testVariantsAreScaledOnceAndShared()
+	{
+		ImageCache images = new ImageCache();
+		BufferedImage toolbar = images.getImage(ImageCache.COIN_ICON, ImageCache.TOOLBAR_ICON_SIZE);
+		BufferedImage panel = images.getImage(ImageCache.COIN_ICON, ImageCache.PANEL_ICON_SIZE);
+
+		assertNotNull(toolbar);
+		assertEquals(ImageCache.TOOLBAR_ICON_SIZE, toolbar.getWidth());
+		assertEquals(ImageCache.PANEL_ICON_SIZE, panel.getHeight());
+		assertSame(toolbar, images.getImage(ImageCache.COIN_ICON, ImageCache.OVERLAY_ICON_SIZE));
+		assertSame(panel, images.getImage(ImageCache.COIN_ICON, ImageCache.PANEL_ICON_SIZE));
+		assertSame(images.getImage(ImageCache.COIN_ICON), images.getImage(ImageCache.COIN_ICON));
+	}
+
+	@Test
+	public void testShrinkingAveragesPixels()
+	{
+		// Black and white columns shrink to an even grey, not to whichever column was sampled
+		BufferedImage stripes = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < 64; x++)
+		{
+			for (int y = 0; y < 64; y++)
+			{
+				stripes.setRGB(x, y, x % 2 == 0 ? 0xFF000000 : 0xFFFFFFFF);
+			}
+		}
+
+		BufferedImage scaled = ImageCache.scale(stripes, 8);
+
+		assertEquals(8, scaled.getWidth());
+		int red = scaled.getRGB(4, 4) >> 16 & 0xFF;
+		assertEquals(128, red, 16);
+	}
+}
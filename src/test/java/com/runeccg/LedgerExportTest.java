@@ -0,0 +1,120 @@
+package com.runeccg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LedgerExportTest
+{
+	private static final String PROFILE = "rsprofile.abc123";
+
+	private Path directory;
+	private CoinJournal journal;
+	private LedgerExport export;
+	private String code;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("runeccg-export");
+		journal = new CoinJournal(directory.toFile());
+		export = new LedgerExport(journal);
+
+		code = new CodeSigner().encode(5);
+		journal.open(PROFILE);
+		journal.appendSnapshot(0, 10);
+		journal.appendAward(1500, 500, 11);
+		journal.appendCashOut(Base64.getDecoder().decode(code), 5, 500, 6);
+		journal.appendRedeemed(Base64.getDecoder().decode(code), true, 500, 6);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		journal.close();
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testCsv() throws IOException
+	{
+		Path file = directory.resolve("history.csv");
+		assertEquals(4, export.export(PROFILE, file, LedgerExport.Format.CSV));
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+		assertEquals(5, lines.size());
+		assertEquals("time,type,value,code,progress_xp,silver_coins", lines.get(0));
+		assertTrue(lines.get(1), lines.get(1).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z,snapshot,0,,0,10"));
+		assertTrue(lines.get(2), lines.get(2).endsWith(",award,1500,,500,11"));
+		assertTrue(lines.get(3), lines.get(3).endsWith(",cash_out,5," + code + ",500,6"));
+		assertTrue(lines.get(4), lines.get(4).endsWith(",redeemed,1," + code + ",500,6"));
+	}
+
+	@Test
+	public void testJson() throws IOException
+	{
+		Path file = directory.resolve("history.json");
+		assertEquals(4, export.export(PROFILE, file, LedgerExport.Format.JSON));
+
+		String json = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+		assertTrue(json, json.startsWith("[\n{\"time\":\""));
+		assertTrue(json, json.contains("\"type\":\"award\",\"value\":1500,\"code\":null,\"progressXp\":500,\"silverCoins\":11},\n"));
+		assertTrue(json, json.contains("\"type\":\"cash_out\",\"value\":5,\"code\":\"" + code + "\","));
+		assertTrue(json, json.endsWith("}\n]\n"));
+	}
+
+	@Test
+	public void testFailedExportKeepsExistingFile() throws IOException
+	{
+		Path file = directory.resolve("history.csv");
+		Files.write(file, "kept".getBytes(StandardCharsets.US_ASCII));
+		LedgerExport failing = new LedgerExport(new CoinJournal(directory.toFile())
+		{
+			@Override
+			boolean readAll(String profileKey, Consumer<JournalRecord> visitor) throws IOException
+			{
+				throw new IOException("Journal unreadable");
+			}
+		});
+
+		try
+		{
+			failing.export(PROFILE, file, LedgerExport.Format.CSV);
+			fail("Export should have failed");
+		}
+		catch (IOException e)
+		{
+			assertEquals("Journal unreadable", e.getMessage());
+		}
+		assertEquals("kept", new String(Files.readAllBytes(file), StandardCharsets.US_ASCII));
+		try (Stream<Path> paths = Files.list(directory))
+		{
+			assertFalse(paths.anyMatch(p -> p.toString().endsWith(".tmp")));
+		}
+	}
+
+	@Test
+	public void testEmptyHistory() throws IOException
+	{
+		Path file = directory.resolve("empty.json");
+		assertEquals(0, export.export("rsprofile.none", file, LedgerExport.Format.JSON));
+		assertEquals("[]\n", new String(Files.readAllBytes(file), StandardCharsets.US_ASCII));
+	}
+}
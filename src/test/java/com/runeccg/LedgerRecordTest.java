@@ -0,0 +1,52 @@
+package com.runeccg;
+
+import java.util.Base64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class LedgerRecordTest
+{
+	@Test
+	public void testRoundTrip()
+	{
+		int[] skillXp = {13_034_431, -1, 0, 200_000_000};
+
+		String encoded = new LedgerRecord(999, 123_456, skillXp).encode();
+		LedgerRecord decoded = LedgerRecord.decode(encoded);
+
+		assertEquals(999, decoded.getCurrentXp());
+		assertEquals(123_456, decoded.getTotalCoins());
+		assertArrayEquals(skillXp, decoded.getSkillXp());
+	}
+
+	@Test
+	public void testWithoutBaseline()
+	{
+		String encoded = new LedgerRecord(5, 7, null).encode();
+
+		assertNull(LedgerRecord.decode(encoded).getSkillXp());
+		// Version, balance and an empty baseline
+		assertEquals(10, Base64.getDecoder().decode(encoded).length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsNewerVersion()
+	{
+		byte[] record = Base64.getDecoder().decode(new LedgerRecord(5, 7, null).encode());
+		record[0] = LedgerRecord.VERSION + 1;
+
+		LedgerRecord.decode(Base64.getEncoder().encodeToString(record));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsTruncatedRecord()
+	{
+		byte[] record = Base64.getDecoder().decode(new LedgerRecord(5, 7, new int[]{1, 2}).encode());
+		byte[] truncated = new byte[record.length - 1];
+		System.arraycopy(record, 0, truncated, 0, truncated.length);
+
+		LedgerRecord.decode(Base64.getEncoder().encodeToString(truncated));
+	}
+}
@@ -0,0 +1,75 @@
+package com.runeccg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PluginMetricsTest
+{
+	@Test
+	public void testDisabledMetricsRecordNothing()
+	{
+		PluginMetrics metrics = new PluginMetrics(false);
+
+		metrics.increment(PluginMetrics.Counter.STAT_CHANGED_PROCESSED);
+		long start = metrics.startTimer();
+		metrics.stopTimer(PluginMetrics.Timer.STAT_CHANGED, start);
+
+		assertEquals(0, start);
+		assertEquals(0, metrics.getCount(PluginMetrics.Counter.STAT_CHANGED_PROCESSED));
+		assertEquals(0, metrics.getHistogram(PluginMetrics.Timer.STAT_CHANGED).getCount());
+	}
+
+	@Test
+	public void testEnabledMetricsRecord()
+	{
+		PluginMetrics metrics = new PluginMetrics(true);
+
+		metrics.increment(PluginMetrics.Counter.EDT_POSTS);
+		metrics.add(PluginMetrics.Counter.CONFIG_WRITES, 2);
+		metrics.stopTimer(PluginMetrics.Timer.CASH_OUT, metrics.startTimer());
+
+		assertEquals(1, metrics.getCount(PluginMetrics.Counter.EDT_POSTS));
+		assertEquals(2, metrics.getCount(PluginMetrics.Counter.CONFIG_WRITES));
+		assertEquals(1, metrics.getHistogram(PluginMetrics.Timer.CASH_OUT).getCount());
+		assertTrue(metrics.report().contains("Config writes: 2"));
+
+		metrics.reset();
+		assertEquals(0, metrics.getCount(PluginMetrics.Counter.EDT_POSTS));
+	}
+
+	@Test
+	public void testHistogramBucketsStayWithinPrecision()
+	{
+		for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1)
+		{
+			int bucket = LatencyHistogram.bucketOf(value);
+			long highest = LatencyHistogram.highestValueOf(bucket);
+			assertTrue(highest >= value);
+			assertTrue(highest - value <= value / 16 + 1);
+		}
+	}
+
+	@Test
+	public void testHistogramPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+		{
+			histogram.record(i * 1000L);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500_500, histogram.getMean());
+		assertEquals(1_000_000, histogram.getMax());
+		assertWithin(500_000, histogram.getPercentile(50));
+		assertWithin(990_000, histogram.getPercentile(99));
+		assertEquals(1_000_000, histogram.getPercentile(100));
+	}
+
+	private static void assertWithin(long expected, long actual)
+	{
+		assertTrue("expected about " + expected + " but was " + actual,
+			Math.abs(actual - expected) <= expected / 16);
+	}
+}
@@ -0,0 +1,40 @@
+package com.runeccg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ProfileCacheTest
+{
+	@Test
+	public void testLeastRecentlyUsedIsEvicted()
+	{
+		ProfileCache<String> cache = new ProfileCache<>(2);
+		cache.put("main", "main state");
+		cache.put("alt", "alt state");
+
+		// Switching away from main again makes alt the least recently used, checking for it does not
+		cache.put("main", "main state");
+		assertTrue(cache.contains("alt"));
+		cache.put("dmm", "dmm state");
+
+		assertEquals(2, cache.size());
+		assertFalse(cache.contains("alt"));
+		assertEquals("main state", cache.remove("main"));
+		assertEquals("dmm state", cache.remove("dmm"));
+	}
+
+	@Test
+	public void testRemoveTakesTheValueOut()
+	{
+		ProfileCache<String> cache = new ProfileCache<>(2);
+		cache.put("main", "old");
+		cache.put("main", "new");
+
+		assertEquals("new", cache.remove("main"));
+		assertNull(cache.remove("main"));
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,261 @@
+package com.runeccg;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.swing.SwingUtilities;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.StatChanged;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.events.RuneScapeProfileChanged;
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.NavigationButton;
+import net.runelite.client.ui.overlay.OverlayManager;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Drives a real, started {@link RuneCCGPlugin} without a game client, by replaying a
+ * {@link ReplaySession} as fast as the plugin can take it.
+ * <p>
+ * {@link Client} and {@link ConfigManager} are replaced with in-memory stand-ins, and the journal
+ * is kept in a temporary directory. The harness only reports what the plugin saved for each
+ * profile, tests compare that with values worked out by hand for the session.
+ */
+final class ReplayHarness implements AutoCloseable
+{
+	private static final String CONFIG_GROUP = "runeccg";
+
+	private final Map<String, Object> config = new HashMap<>();
+	private final File journalDirectory;
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final RuneCCGPlugin plugin;
+	private final PluginMetrics metrics;
+	private RuneCCGPanel panel;
+
+	// What the stand-in client reports
+	private GameState gameState = GameState.LOGIN_SCREEN;
+	private EnumSet<WorldType> worldTypes = EnumSet.noneOf(WorldType.class);
+	private String profileKey;
+	private final Map<String, int[]> skillExperience = new HashMap<>();
+	// Every profile logged in to, in the order of their keys
+	private final Set<String> profiles = new TreeSet<>();
+
+	ReplayHarness() throws Exception
+	{
+		journalDirectory = Files.createTempDirectory("runeccg-replay").toFile();
+
+		Client client = (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{Client.class},
+			(proxy, method, args) ->
+			{
+				switch (method.getName())
+				{
+					case "getGameState":
+						return gameState;
+					case "getWorldType":
+						return worldTypes;
+					case "getSkillExperiences":
+						return experience(profileKey).clone();
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "ReplayClient";
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+
+		ConfigManager configManager = mock(ConfigManager.class, invocation ->
+		{
+			switch (invocation.getMethod().getName())
+			{
+				case "getRSProfileKey":
+					return profileKey;
+				case "getConfiguration":
+					return invocation.getArguments().length == 4 ? config.get(configKey(invocation.getArgument(1), invocation.getArgument(2))) : null;
+				case "setConfiguration":
+					if (invocation.getArguments().length == 4)
+					{
+						config.put(configKey(invocation.getArgument(1), invocation.getArgument(2)), invocation.getArgument(3));
+					}
+					return null;
+				default:
+					return null;
+			}
+		});
+
+		ClientToolbar clientToolbar = mock(ClientToolbar.class, invocation ->
+		{
+			if (invocation.getMethod().getName().equals("addNavigation"))
+			{
+				panel = (RuneCCGPanel) ((NavigationButton) invocation.getArgument(0)).getPanel();
+			}
+			return null;
+		});
+
+		Injector injector = Guice.createInjector(binder ->
+		{
+			binder.bind(Client.class).toInstance(client);
+			binder.bind(ConfigManager.class).toInstance(configManager);
+			binder.bind(ClientToolbar.class).toInstance(clientToolbar);
+			binder.bind(OverlayManager.class).toInstance(mock(OverlayManager.class));
+			// Plugin config with every item at its default
+			binder.bind(RuneCCGConfig.class).toInstance(mock(RuneCCGConfig.class));
+			binder.bind(ScheduledExecutorService.class).toInstance(executor);
+			binder.bind(CoinJournal.class).toInstance(new CoinJournal(journalDirectory));
+			// Collect the plugin's own latency figures for the report
+			binder.bindConstant().annotatedWith(Names.named("developerMode")).to(true);
+		});
+
+		plugin = injector.getInstance(RuneCCGPlugin.class);
+		Field injectorField = Plugin.class.getDeclaredField("injector");
+		injectorField.setAccessible(true);
+		injectorField.set(plugin, injector);
+		metrics = injector.getInstance(PluginMetrics.class);
+
+		plugin.startUp();
+		// Profiles load on the plugin's own thread, a real session gives them ticks to finish
+		plugin.awaitLedger();
+	}
+
+	/**
+	 * Replays every step of a session, logging out at the end if it did not.
+	 */
+	Result replay(ReplaySession session) throws Exception
+	{
+		long start = System.nanoTime();
+		int events = 0;
+		for (ReplaySession.Step step : session.getSteps())
+		{
+			switch (step.kind)
+			{
+				case LOGIN:
+					profileKey = step.profile;
+					profiles.add(profileKey);
+					worldTypes = step.worldTypes;
+					setGameState(GameState.LOGGED_IN);
+					plugin.onRuneScapeProfileChanged(new RuneScapeProfileChanged());
+					plugin.awaitLedger();
+					break;
+				case HOP:
+					setGameState(GameState.HOPPING);
+					worldTypes = step.worldTypes;
+					setGameState(GameState.LOGGED_IN);
+					plugin.awaitLedger();
+					break;
+				case CONFIRM:
+					// Runs after the prompt the plugin posted when entering the world
+					SwingUtilities.invokeAndWait(panel::confirmEventWorld);
+					break;
+				case XP:
+					experience(profileKey)[step.skill.ordinal()] = step.xp;
+					plugin.onStatChanged(new StatChanged(step.skill, step.xp, 1, 1));
+					break;
+				case TICK:
+					plugin.onGameTick(new GameTick());
+					break;
+				case LOGOUT:
+					setGameState(GameState.LOGIN_SCREEN);
+					break;
+			}
+			events++;
+		}
+
+		if (gameState != GameState.LOGIN_SCREEN)
+		{
+			setGameState(GameState.LOGIN_SCREEN);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		// Logging out flushed every profile's balance to config
+		Map<String, LedgerRecord> saved = new TreeMap<>();
+		for (String profile : profiles)
+		{
+			Object record = config.get(configKey(profile, "ledger"));
+			saved.put(profile, record != null ? LedgerRecord.decode((String) record) : new LedgerRecord(0, 0, null));
+		}
+		return new Result(events, elapsed, saved, metrics.report());
+	}
+
+	@Override
+	public void close() throws Exception
+	{
+		plugin.shutDown();
+		plugin.awaitLedger();
+		executor.shutdownNow();
+		for (File file : journalDirectory.listFiles())
+		{
+			file.delete();
+		}
+		journalDirectory.delete();
+	}
+
+	private int[] experience(String profile)
+	{
+		return skillExperience.computeIfAbsent(profile, p -> new int[Skill.values().length]);
+	}
+
+	private void setGameState(GameState state)
+	{
+		gameState = state;
+		GameStateChanged event = new GameStateChanged();
+		event.setGameState(state);
+		plugin.onGameStateChanged(event);
+	}
+
+	private static String configKey(String profile, String key)
+	{
+		return CONFIG_GROUP + "." + profile + "." + key;
+	}
+
+	static final class Result
+	{
+		final int events;
+		final long elapsedNanos;
+		// What each profile logged in to saved when the session ended
+		final Map<String, LedgerRecord> saved;
+		final String metrics;
+
+		private Result(int events, long elapsedNanos, Map<String, LedgerRecord> saved, String metrics)
+		{
+			this.events = events;
+			this.elapsedNanos = elapsedNanos;
+			this.saved = saved;
+			this.metrics = metrics;
+		}
+
+		double eventsPerSecond()
+		{
+			return events * 1e9 / Math.max(1, elapsedNanos);
+		}
+
+		int coins(String profile)
+		{
+			return saved.get(profile).getTotalCoins();
+		}
+
+		int progress(String profile)
+		{
+			return saved.get(profile).getCurrentXp();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.runeccg;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import net.runelite.api.Skill;
+import net.runelite.api.WorldType;
+
+/**
+ * A recorded or generated stream of client events for {@link ReplayHarness}.
+ * <p>
+ * Recorded sessions are plain text, one step per line, with {@code #} starting a comment:
+ * <pre>
+ * login &lt;profile&gt; &lt;WORLD_TYPE,...|NORMAL&gt;
+ * hop &lt;WORLD_TYPE,...|NORMAL&gt;
+ * confirm
+ * xp &lt;SKILL&gt; &lt;total xp&gt;
+ * tick
+ * logout
+ * </pre>
+ */
+final class ReplaySession
+{
+	enum Kind
+	{
+		LOGIN,
+		HOP,
+		CONFIRM,
+		XP,
+		TICK,
+		LOGOUT
+	}
+
+	static final class Step
+	{
+		final Kind kind;
+		final String profile;
+		final EnumSet<WorldType> worldTypes;
+		final Skill skill;
+		final int xp;
+
+		private Step(Kind kind, String profile, EnumSet<WorldType> worldTypes, Skill skill, int xp)
+		{
+			this.kind = kind;
+			this.profile = profile;
+			this.worldTypes = worldTypes;
+			this.skill = skill;
+			this.xp = xp;
+		}
+	}
+
+	private static final Skill[] SKILLS = Skill.values();
+	private static final WorldType[] EVENT_WORLDS = {WorldType.SEASONAL, WorldType.DEADMAN, WorldType.FRESH_START_WORLD};
+
+	private final List<Step> steps = new ArrayList<>();
+
+	List<Step> getSteps()
+	{
+		return Collections.unmodifiableList(steps);
+	}
+
+	ReplaySession login(String profile, EnumSet<WorldType> worldTypes)
+	{
+		steps.add(new Step(Kind.LOGIN, profile, worldTypes, null, 0));
+		return this;
+	}
+
+	ReplaySession hop(EnumSet<WorldType> worldTypes)
+	{
+		steps.add(new Step(Kind.HOP, null, worldTypes, null, 0));
+		return this;
+	}
+
+	ReplaySession confirm()
+	{
+		steps.add(new Step(Kind.CONFIRM, null, null, null, 0));
+		return this;
+	}
+
+	ReplaySession xp(Skill skill, int xp)
+	{
+		steps.add(new Step(Kind.XP, null, null, skill, xp));
+		return this;
+	}
+
+	ReplaySession tick()
+	{
+		steps.add(new Step(Kind.TICK, null, null, null, 0));
+		return this;
+	}
+
+	ReplaySession logout()
+	{
+		steps.add(new Step(Kind.LOGOUT, null, null, null, 0));
+		return this;
+	}
+
+	static ReplaySession parse(Reader reader) throws IOException
+	{
+		ReplaySession session = new ReplaySession();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		int number = 0;
+		while ((line = lines.readLine()) != null)
+		{
+			number++;
+			int comment = line.indexOf('#');
+			String[] parts = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+			try
+			{
+				switch (parts[0])
+				{
+					case "":
+						break;
+					case "login":
+						session.login(parts[1], worldTypes(parts[2]));
+						break;
+					case "hop":
+						session.hop(worldTypes(parts[1]));
+						break;
+					case "confirm":
+						session.confirm();
+						break;
+					case "xp":
+						session.xp(Skill.valueOf(parts[1]), Integer.parseInt(parts[2]));
+						break;
+					case "tick":
+						session.tick();
+						break;
+					case "logout":
+						session.logout();
+						break;
+					default:
+						throw new IllegalArgumentException("unknown step " + parts[0]);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				throw new IOException("Bad session line " + number + ": " + line, e);
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * Generates sessions over a few profiles, with hops between normal and event worlds, event
+	 * world prompts that are sometimes accepted, and bursts of drops in several skills per tick.
+	 */
+	static ReplaySession synthetic(long seed, int sessions, int ticksPerSession)
+	{
+		Random random = new Random(seed);
+		ReplaySession session = new ReplaySession();
+		Map<String, int[]> skillXp = new HashMap<>();
+
+		for (int s = 0; s < sessions; s++)
+		{
+			String profile = "profile" + random.nextInt(3);
+			int[] xp = skillXp.computeIfAbsent(profile, p -> new int[SKILLS.length]);
+
+			EnumSet<WorldType> world = randomWorld(random);
+			session.login(profile, world);
+			enterWorld(session, random, xp, world);
+
+			for (int t = 0; t < ticksPerSession; t++)
+			{
+				if (random.nextInt(100) < 2)
+				{
+					EnumSet<WorldType> hopTo = randomWorld(random);
+					session.hop(hopTo);
+					enterWorld(session, random, xp, hopTo);
+				}
+
+				// A burst of drops in one to four skills, as combat or skilling would give
+				int drops = 1 + random.nextInt(4);
+				for (int d = 0; d < drops; d++)
+				{
+					int skill = random.nextInt(SKILLS.length);
+					xp[skill] += 1 + random.nextInt(random.nextInt(10) == 0 ? 20_000 : 500);
+					session.xp(SKILLS[skill], xp[skill]);
+				}
+				session.tick();
+			}
+
+			session.logout();
+		}
+		return session;
+	}
+
+	/**
+	 * Every skill's XP is sent when entering a world, and event world prompts are accepted half the time.
+	 */
+	private static void enterWorld(ReplaySession session, Random random, int[] xp, EnumSet<WorldType> world)
+	{
+		for (int skill = 0; skill < SKILLS.length; skill++)
+		{
+			session.xp(SKILLS[skill], xp[skill]);
+		}
+
+		if (!world.contains(WorldType.MEMBERS) && random.nextBoolean())
+		{
+			session.confirm();
+		}
+	}
+
+	private static EnumSet<WorldType> randomWorld(Random random)
+	{
+		if (random.nextInt(5) == 0)
+		{
+			return EnumSet.of(EVENT_WORLDS[random.nextInt(EVENT_WORLDS.length)]);
+		}
+		return EnumSet.of(WorldType.MEMBERS);
+	}
+
+	private static EnumSet<WorldType> worldTypes(String value)
+	{
+		EnumSet<WorldType> types = EnumSet.noneOf(WorldType.class);
+		if (!value.equals("NORMAL"))
+		{
+			for (String type : value.split(","))
+			{
+				types.add(WorldType.valueOf(type));
+			}
+		}
+		return types;
+	}
+}
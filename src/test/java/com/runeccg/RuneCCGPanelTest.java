@@ -0,0 +1,101 @@
+package com.runeccg;
+
+import java.awt.CardLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.image.BufferedImage;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RuneCCGPanelTest
+{
+	@Test
+	public void testViewsAreBuiltOnFirstActivation() throws Exception
+	{
+		SwingUtilities.invokeAndWait(() ->
+		{
+			RuneCCGPanel panel = new RuneCCGPanel();
+			panel.setCoinIcon(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB));
+
+			assertFalse(panel.isBuilt());
+
+			// State changes before the tab is opened are kept for when it is
+			panel.updateProgress(250, 7);
+			panel.setContentEnabled(true);
+
+			panel.onActivate();
+			assertTrue(panel.isBuilt());
+
+			// Enabled, so the view showing is the one with the progress
+			Component shown = visibleCard(panel);
+			assertNotNull(shown);
+			JLabel coins = find(shown, JLabel.class, "7 Silver Coins");
+			assertNotNull(coins);
+			assertNotNull(find(shown, JLabel.class, "XP: 250 / " + CoinLedger.XP_PER_SILVER_COIN));
+			JProgressBar progress = find(shown, JProgressBar.class, null);
+			assertNotNull(progress);
+			assertEquals(250, progress.getValue());
+
+			// Reopening the tab does not build anything again
+			int components = panel.getComponentCount();
+			panel.onActivate();
+			assertTrue(panel.isBuilt());
+			assertEquals(components, panel.getComponentCount());
+			assertSame(shown, visibleCard(panel));
+			assertSame(coins, find(visibleCard(panel), JLabel.class, "7 Silver Coins"));
+		});
+	}
+
+	/**
+	 * @return the card showing in the first card layout found under the component
+	 */
+	private static Component visibleCard(Component component)
+	{
+		if (!(component instanceof Container))
+		{
+			return null;
+		}
+
+		Container container = (Container) component;
+		for (Component child : container.getComponents())
+		{
+			Component card = container.getLayout() instanceof CardLayout ? (child.isVisible() ? child : null) : visibleCard(child);
+			if (card != null)
+			{
+				return card;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param text the label's text, or null to match any component of the type
+	 */
+	private static <T extends Component> T find(Component component, Class<T> type, String text)
+	{
+		if (type.isInstance(component) && (text == null || text.equals(((JLabel) component).getText())))
+		{
+			return type.cast(component);
+		}
+
+		if (component instanceof Container)
+		{
+			for (Component child : ((Container) component).getComponents())
+			{
+				T found = find(child, type, text);
+				if (found != null)
+				{
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,73 @@
+package com.runeccg;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import lombok.extern.slf4j.Slf4j;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+@Slf4j
+public class StatChangedReplayTest
+{
+	@Test
+	public void testSyntheticSessions() throws Exception
+	{
+		// Too many events to work out by hand, so this replay is only run for its throughput
+		ReplayHarness.Result result = replay(ReplaySession.synthetic(1234, 200, 500));
+
+		assertTrue(result.events > 0);
+		assertEquals(3, result.saved.size());
+	}
+
+	@Test
+	public void testRecordedSession() throws Exception
+	{
+		ReplayHarness.Result result = replay(load("sample.session"));
+
+		// Worked out by hand from the comments in sample.session
+		assertEquals(2, result.coins("main"));
+		assertEquals(450, result.progress("main"));
+		assertEquals(1, result.coins("alt"));
+		assertEquals(200, result.progress("alt"));
+		assertEquals(1, result.coins("dmm"));
+		assertEquals(500, result.progress("dmm"));
+		// main's second login finds it cached from when alt logged in
+		assertTrue(result.metrics, result.metrics.contains("Profiles loaded from cache: 1\n"));
+	}
+
+	@Test
+	public void testRecordedBursts() throws Exception
+	{
+		ReplayHarness.Result result = replay(load("bursts.session"));
+
+		// Worked out by hand from the comments in bursts.session
+		assertEquals(3, result.coins("main"));
+		assertEquals(250, result.progress("main"));
+	}
+
+	private ReplaySession load(String name) throws IOException
+	{
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(name), StandardCharsets.UTF_8))
+		{
+			return ReplaySession.parse(reader);
+		}
+	}
+
+	private static ReplayHarness.Result replay(ReplaySession session) throws Exception
+	{
+		try (ReplayHarness harness = new ReplayHarness())
+		{
+			ReplayHarness.Result result = harness.replay(session);
+			log.info("Replayed {} events at {} events/s", result.events, String.format("%.0f", result.eventsPerSecond()));
+			for (String profile : result.saved.keySet())
+			{
+				log.info("{}: {} Silver Coins, {} XP towards the next", profile, result.coins(profile), result.progress(profile));
+			}
+			log.info("Plugin metrics:\n{}", result.metrics);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.runeccg;
+
+import java.util.EnumSet;
+import net.runelite.api.WorldType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class WorldEligibilityTest
+{
+	private static final int NORMAL = CoinRules.mask(EnumSet.of(WorldType.MEMBERS));
+	private static final int SEASONAL = CoinRules.mask(EnumSet.of(WorldType.SEASONAL));
+	private static final int DEADMAN = CoinRules.mask(EnumSet.of(WorldType.DEADMAN));
+	private static final int SEASONAL_DEADMAN = SEASONAL | DEADMAN;
+
+	private final XpTracker xpTracker = new XpTracker();
+	private final WorldEligibility eligibility = new WorldEligibility(xpTracker);
+
+	@Test
+	public void testNormalWorldsCountStraightAway()
+	{
+		assertEquals(WorldEligibility.State.OFFLINE, eligibility.getState());
+		assertFalse(xpTracker.isEligible());
+
+		assertEquals(WorldEligibility.State.ELIGIBLE, eligibility.enter(NORMAL, false));
+		assertTrue(xpTracker.isEligible());
+
+		eligibility.leave();
+		assertEquals(WorldEligibility.State.OFFLINE, eligibility.getState());
+		assertFalse(xpTracker.isEligible());
+	}
+
+	@Test
+	public void testConfirmationIsRememberedPerWorldType()
+	{
+		assertEquals(WorldEligibility.State.AWAITING_CONFIRMATION, eligibility.enter(SEASONAL, false));
+		assertFalse(xpTracker.isEligible());
+		assertTrue(eligibility.confirm(SEASONAL));
+		assertTrue(xpTracker.isEligible());
+
+		// Hopping to another seasonal world does not ask again, a world with a new type does
+		eligibility.leave();
+		assertEquals(WorldEligibility.State.ELIGIBLE, eligibility.enter(SEASONAL, false));
+		eligibility.leave();
+		assertEquals(WorldEligibility.State.AWAITING_CONFIRMATION, eligibility.enter(SEASONAL_DEADMAN, false));
+		assertTrue(eligibility.confirm(SEASONAL_DEADMAN));
+
+		eligibility.leave();
+		assertEquals(WorldEligibility.State.ELIGIBLE, eligibility.enter(DEADMAN, false));
+
+		// Forgotten when the plugin stops
+		eligibility.reset();
+		assertEquals(WorldEligibility.State.AWAITING_CONFIRMATION, eligibility.enter(SEASONAL, false));
+	}
+
+	@Test
+	public void testLateConfirmationIsIgnored()
+	{
+		eligibility.enter(SEASONAL, false);
+		eligibility.leave();
+
+		// The prompt was accepted after leaving the world it was shown for
+		assertFalse(eligibility.confirm(SEASONAL));
+		assertEquals(WorldEligibility.State.OFFLINE, eligibility.getState());
+		assertFalse(xpTracker.isEligible());
+
+		eligibility.enter(DEADMAN, false);
+		assertFalse(eligibility.confirm(SEASONAL));
+		assertEquals(WorldEligibility.State.AWAITING_CONFIRMATION, eligibility.getState());
+	}
+
+	@Test
+	public void testExcludedWorldsNeverCount()
+	{
+		assertEquals(WorldEligibility.State.EXCLUDED, eligibility.enter(SEASONAL, true));
+		assertFalse(eligibility.confirm(SEASONAL));
+		assertFalse(xpTracker.isEligible());
+
+		// Once the rules stop excluding it, the world still needs confirming
+		assertEquals(WorldEligibility.State.AWAITING_CONFIRMATION, eligibility.enter(SEASONAL, false));
+	}
+}
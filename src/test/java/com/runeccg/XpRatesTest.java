@@ -0,0 +1,81 @@
+package com.runeccg;
+
+import java.lang.management.ManagementFactory;
+import net.runelite.api.Skill;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class XpRatesTest
+{
+	private static final long MINUTE = 60_000;
+	private static final double DELTA = 0.001;
+
+	@Test
+	public void testWindowsForgetOldGains()
+	{
+		XpRates rates = new XpRates();
+		long start = 1_000 * MINUTE;
+		rates.startSession(start);
+
+		rates.record(Skill.MINING, 600, start);
+		rates.record(Skill.FISHING, 400, start + 10 * MINUTE);
+		long now = start + 30 * MINUTE;
+
+		// Mining's drop has fallen out of the last five minutes, but not the hour
+		assertEquals(0, rates.getXpPerHour(XpRates.Window.FIVE_MINUTES, XpRates.TOTAL, now), DELTA);
+		assertEquals(1200, rates.getXpPerHour(XpRates.Window.HOUR, Skill.MINING.ordinal(), now), DELTA);
+		assertEquals(2000, rates.getXpPerHour(XpRates.Window.HOUR, XpRates.TOTAL, now), DELTA);
+		assertEquals(2000, rates.getXpPerHour(XpRates.Window.SESSION, XpRates.TOTAL, now), DELTA);
+
+		now = start + 65 * MINUTE;
+		assertEquals(400, rates.getXpPerHour(XpRates.Window.HOUR, XpRates.TOTAL, now), DELTA);
+		assertEquals(0, rates.getXpPerHour(XpRates.Window.HOUR, Skill.MINING.ordinal(), now), DELTA);
+		assertEquals(1000 * 60 / 65.0, rates.getXpPerHour(XpRates.Window.SESSION, XpRates.TOTAL, now), DELTA);
+	}
+
+	@Test
+	public void testNothingCountsOutsideASession()
+	{
+		XpRates rates = new XpRates();
+		rates.record(Skill.ATTACK, 1000, MINUTE);
+
+		rates.startSession(2 * MINUTE);
+		assertEquals(0, rates.getXpPerHour(XpRates.Window.SESSION, XpRates.TOTAL, 3 * MINUTE), DELTA);
+
+		rates.endSession();
+		rates.record(Skill.ATTACK, 1000, 4 * MINUTE);
+		assertEquals(0, rates.getXpPerHour(XpRates.Window.HOUR, Skill.ATTACK.ordinal(), 4 * MINUTE), DELTA);
+	}
+
+	@Test
+	public void testRecordingDoesNotAllocate()
+	{
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		Skill[] skills = Skill.values();
+
+		XpRates rates = new XpRates();
+		rates.startSession(1);
+
+		// Warm up so the loop below runs compiled code, then a long session of drops every 600ms
+		long now = record(rates, skills, 1, 200_000);
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		now = record(rates, skills, now, 1_000_000);
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue(rates.getXpPerHour(XpRates.Window.FIVE_MINUTES, XpRates.TOTAL, now) > 0);
+		assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+	}
+
+	private static long record(XpRates rates, Skill[] skills, long now, int drops)
+	{
+		for (int i = 0; i < drops; i++)
+		{
+			now += 600;
+			rates.record(skills[i % skills.length], 25, now);
+			rates.getXpPerHour(XpRates.Window.HOUR, XpRates.TOTAL, now);
+		}
+		return now;
+	}
+}
@@ -0,0 +1,115 @@
+package com.runeccg;
+
+import java.lang.management.ManagementFactory;
+import net.runelite.api.Skill;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class XpTrackerTest
+{
+	@Test
+	public void testFirstUpdateOnlySetsStartingPoint()
+	{
+		XpTracker tracker = new XpTracker();
+		tracker.setEligible(true);
+
+		assertEquals(0, tracker.update(Skill.MINING, 5000));
+		assertEquals(35, tracker.update(Skill.MINING, 5035));
+		assertEquals(0, tracker.update(Skill.FISHING, 100));
+	}
+
+	@Test
+	public void testIneligibleGainsAreNeverAwarded()
+	{
+		XpTracker tracker = new XpTracker();
+		tracker.update(Skill.ATTACK, 1000);
+
+		assertEquals(0, tracker.update(Skill.ATTACK, 1400));
+
+		tracker.setEligible(true);
+		assertEquals(100, tracker.update(Skill.ATTACK, 1500));
+	}
+
+	@Test
+	public void testResetForgetsSkills()
+	{
+		XpTracker tracker = new XpTracker();
+		tracker.setEligible(true);
+		tracker.update(Skill.SLAYER, 1000);
+
+		tracker.reset();
+
+		assertEquals(0, tracker.update(Skill.SLAYER, 2000));
+		assertEquals(0, tracker.update(Skill.SLAYER, 1500));
+		assertEquals(600, tracker.update(Skill.SLAYER, 2600));
+	}
+
+	@Test
+	public void testSavedBaselineCountsFirstDrop()
+	{
+		XpTracker tracker = new XpTracker();
+		tracker.setEligible(true);
+		int[] baseline = new int[Skill.values().length];
+		baseline[Skill.MINING.ordinal()] = 5000;
+
+		tracker.setBaseline(baseline);
+
+		assertEquals(250, tracker.update(Skill.MINING, 5250));
+		assertEquals(5250, tracker.takeBaseline()[Skill.MINING.ordinal()]);
+		assertNull(tracker.takeBaseline());
+	}
+
+	@Test
+	public void testSeedOnlyFillsUnseenSkills()
+	{
+		XpTracker tracker = new XpTracker();
+		tracker.setEligible(true);
+		tracker.update(Skill.ATTACK, 1000);
+
+		// Stats not loaded yet
+		assertFalse(tracker.seedUnseen(new int[Skill.values().length]));
+
+		int[] experience = new int[Skill.values().length];
+		experience[Skill.ATTACK.ordinal()] = 1200;
+		experience[Skill.FISHING.ordinal()] = 300;
+		assertTrue(tracker.seedUnseen(experience));
+
+		assertEquals(300, tracker.update(Skill.ATTACK, 1300));
+		assertEquals(50, tracker.update(Skill.FISHING, 350));
+	}
+
+	@Test
+	public void testSteadyStateUpdatesDoNotAllocate()
+	{
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		Skill[] skills = Skill.values();
+
+		XpTracker tracker = new XpTracker();
+		tracker.setEligible(true);
+
+		// Warm up so the loop below runs compiled code
+		long total = runUpdates(tracker, skills, 0, 200_000);
+
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		total += runUpdates(tracker, skills, 200_000, 1_000_000);
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue(total > 0);
+		// A single boxed value per update would be several megabytes
+		assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+	}
+
+	private static long runUpdates(XpTracker tracker, Skill[] skills, int from, int to)
+	{
+		long total = 0;
+		for (int i = from; i < to; i++)
+		{
+			total += tracker.update(skills[i % skills.length], i * 10);
+		}
+		return total;
+	}
+}
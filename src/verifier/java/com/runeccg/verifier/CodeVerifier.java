@@ -0,0 +1,186 @@
+package com.runeccg.verifier;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decodes and checks cash-out codes generated by the RuneCCG plugin, without any network access.
+ * <p>
+ * A code is 36 bytes, Base64 encoded to 48 characters:
+ * nonce (8 bytes) + timestamp in epoch seconds (8 bytes) + amount (4 bytes)
+ * followed by the first 16 bytes of the HMAC-SHA256 of those 20 bytes.
+ * This must be kept in line with the plugin's CodeSigner.
+ * <p>
+ * A code is accepted once: its signature must match, it must have been issued within the
+ * configured time window, and its nonce must not have been redeemed before. Instances are
+ * thread safe, each thread verifies with its own Mac.
+ */
+public final class CodeVerifier
+{
+	public static final int CODE_LENGTH = 36;
+
+	private static final int PAYLOAD_LENGTH = 20;
+	private static final int SIGNATURE_LENGTH = 16;
+	private static final int ENCODED_LENGTH = 48;
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final long maxAgeSeconds;
+	private final long maxSkewSeconds;
+	private final NonceIndex nonceIndex;
+	private final ThreadLocal<Signer> signers;
+
+	/**
+	 * Creates a verifier with a nonce index sized for the given volume of codes.
+	 *
+	 * @param secretKey the key the plugin signs codes with
+	 * @param maxAgeSeconds how long after being issued a code can be redeemed
+	 * @param maxSkewSeconds how far in the future a code's timestamp may be, to allow for clock differences
+	 * @param expectedPerHour how many codes are expected to be redeemed per hour of issue time
+	 */
+	public CodeVerifier(byte[] secretKey, long maxAgeSeconds, long maxSkewSeconds, int expectedPerHour)
+	{
+		this(secretKey, maxAgeSeconds, maxSkewSeconds, new NonceIndex(maxAgeSeconds + maxSkewSeconds, 3600, expectedPerHour));
+	}
+
+	public CodeVerifier(byte[] secretKey, long maxAgeSeconds, long maxSkewSeconds, NonceIndex nonceIndex)
+	{
+		final SecretKeySpec key = new SecretKeySpec(secretKey.clone(), ALGORITHM);
+		this.maxAgeSeconds = maxAgeSeconds;
+		this.maxSkewSeconds = maxSkewSeconds;
+		this.nonceIndex = nonceIndex;
+		this.signers = ThreadLocal.withInitial(() -> new Signer(key));
+
+		// Fail on a bad key here rather than on the first code
+		signers.get();
+	}
+
+	public VerificationResult verify(String code)
+	{
+		return verify(code, System.currentTimeMillis() / 1000);
+	}
+
+	/**
+	 * Verifies a code and, if it is valid, marks it as redeemed.
+	 *
+	 * @param nowSeconds the current time in epoch seconds
+	 */
+	public VerificationResult verify(String code, long nowSeconds)
+	{
+		if (code == null)
+		{
+			return VerificationResult.malformed();
+		}
+
+		code = code.trim();
+		if (code.length() != ENCODED_LENGTH)
+		{
+			return VerificationResult.malformed();
+		}
+
+		final byte[] bytes;
+		try
+		{
+			bytes = Base64.getDecoder().decode(code);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return VerificationResult.malformed();
+		}
+
+		if (bytes.length != CODE_LENGTH)
+		{
+			return VerificationResult.malformed();
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long nonce = buffer.getLong();
+		long timestamp = buffer.getLong();
+		int amount = buffer.getInt();
+
+		if (!signers.get().matches(bytes))
+		{
+			return new VerificationResult(VerificationResult.Status.BAD_SIGNATURE, nonce, timestamp, amount);
+		}
+
+		VerificationResult.Status status;
+		if (timestamp < nowSeconds - maxAgeSeconds)
+		{
+			status = VerificationResult.Status.EXPIRED;
+		}
+		else if (timestamp > nowSeconds + maxSkewSeconds)
+		{
+			status = VerificationResult.Status.FROM_FUTURE;
+		}
+		else if (!nonceIndex.add(nonce, timestamp))
+		{
+			status = VerificationResult.Status.REPLAYED;
+		}
+		else
+		{
+			status = VerificationResult.Status.VALID;
+		}
+
+		return new VerificationResult(status, nonce, timestamp, amount);
+	}
+
+	/**
+	 * Verifies codes in order. A code repeated within the collection is only valid the first time.
+	 */
+	public List<VerificationResult> verifyAll(Collection<String> codes, long nowSeconds)
+	{
+		List<VerificationResult> results = new ArrayList<>(codes.size());
+		for (String code : codes)
+		{
+			results.add(verify(code, nowSeconds));
+		}
+		return results;
+	}
+
+	private static final class Signer
+	{
+		private final Mac mac;
+		private final byte[] digest;
+
+		Signer(SecretKeySpec key)
+		{
+			try
+			{
+				mac = Mac.getInstance(ALGORITHM);
+				mac.init(key);
+			}
+			catch (GeneralSecurityException e)
+			{
+				throw new IllegalArgumentException("Unable to initialize " + ALGORITHM, e);
+			}
+			digest = new byte[mac.getMacLength()];
+		}
+
+		boolean matches(byte[] code)
+		{
+			mac.update(code, 0, PAYLOAD_LENGTH);
+			try
+			{
+				mac.doFinal(digest, 0);
+			}
+			catch (GeneralSecurityException e)
+			{
+				// The digest buffer is sized from the Mac itself, so this cannot happen
+				throw new IllegalStateException(e);
+			}
+
+			// Constant time, so the comparison does not leak how much of a forged signature is right
+			int difference = 0;
+			for (int i = 0; i < SIGNATURE_LENGTH; i++)
+			{
+				difference |= digest[i] ^ code[PAYLOAD_LENGTH + i];
+			}
+			return difference == 0;
+		}
+	}
+}
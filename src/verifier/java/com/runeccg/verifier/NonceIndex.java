@@ -0,0 +1,336 @@
+package com.runeccg.verifier;
+
+/**
+ * Remembers which code nonces have been redeemed, in memory proportional to how many were.
+ * <p>
+ * Nonces are grouped into buckets by the time their code was issued. Buckets form a ring that
+ * covers the retention period. A bucket is only allocated when the first nonce of its time range
+ * arrives, and is dropped once its range falls out of the retention period behind the newest
+ * bucket, so codes old enough to be rejected as expired are forgotten.
+ * <p>
+ * Each bucket has a Bloom filter, which answers "definitely new" for almost every fresh nonce
+ * without touching anything else, and an exact set that settles the Bloom filter's "maybe seen"
+ * answers. A new bucket starts out sized for as many nonces as the bucket before it received,
+ * and doubles, rebuilding its Bloom filter from the exact set, whenever it fills up. Once it
+ * holds the expected maximum it stops growing and keeps accepting new nonces through its Bloom
+ * filter alone, and a "maybe seen" is then treated as a replay. That may reject a small fraction
+ * of genuine codes, but never lets a replay through.
+ */
+public final class NonceIndex
+{
+	private static final int BLOOM_BITS_PER_NONCE = 16;
+	private static final int BLOOM_HASHES = 5;
+	private static final int MIN_BUCKET_CAPACITY = 64;
+	private static final int LOCK_STRIPES = 64;
+
+	private final long bucketSeconds;
+	private final int expectedPerBucket;
+	// Null slots have no nonces in the time range they currently cover
+	private final Bucket[] buckets;
+	private final Object[] locks;
+	// Newest bucket id seen, buckets more than a ring behind it are expired
+	private volatile long newestId = Long.MIN_VALUE;
+
+	/**
+	 * @param retentionSeconds how far back in time nonces must be remembered
+	 * @param bucketSeconds the time range covered by each bucket
+	 * @param expectedPerBucket how many nonces a bucket is expected to hold at most
+	 */
+	public NonceIndex(long retentionSeconds, long bucketSeconds, int expectedPerBucket)
+	{
+		if (retentionSeconds <= 0 || bucketSeconds <= 0 || expectedPerBucket <= 0)
+		{
+			throw new IllegalArgumentException("retention, bucket size and expected nonces must be positive");
+		}
+
+		this.bucketSeconds = bucketSeconds;
+		this.expectedPerBucket = expectedPerBucket;
+		// One extra bucket on each side for the partially covered ranges at both ends
+		int count = Math.toIntExact((retentionSeconds + bucketSeconds - 1) / bucketSeconds + 2);
+		this.buckets = new Bucket[count];
+		this.locks = new Object[Math.min(count, LOCK_STRIPES)];
+		for (int i = 0; i < locks.length; i++)
+		{
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Records a nonce.
+	 *
+	 * @param nonce the nonce of the code
+	 * @param timestamp when the code was issued, in epoch seconds
+	 * @return true if the nonce was not seen before, false if it was (or may have been), or if
+	 * its time range is already older than the retention period
+	 */
+	public boolean add(long nonce, long timestamp)
+	{
+		long id = Math.floorDiv(timestamp, bucketSeconds);
+		if (!advance(id))
+		{
+			return false;
+		}
+
+		int slot = slot(id);
+		synchronized (locks[slot % locks.length])
+		{
+			Bucket bucket = buckets[slot];
+			if (bucket == null || bucket.id < id)
+			{
+				bucket = new Bucket(id, initialCapacity(id), expectedPerBucket);
+				buckets[slot] = bucket;
+			}
+			else if (bucket.id > id)
+			{
+				return false;
+			}
+			return bucket.add(nonce);
+		}
+	}
+
+	/**
+	 * @return the approximate number of bytes held by the index
+	 */
+	public long memoryBytes()
+	{
+		long total = 0;
+		for (int slot = 0; slot < buckets.length; slot++)
+		{
+			synchronized (locks[slot % locks.length])
+			{
+				Bucket bucket = buckets[slot];
+				if (bucket != null)
+				{
+					total += (bucket.bloom.length + bucket.exact.length) * (long) Long.BYTES;
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Moves the newest bucket id forward to {@code id} if it is newer, dropping the buckets that
+	 * expire because of it.
+	 *
+	 * @return false if {@code id} is already expired
+	 */
+	private boolean advance(long id)
+	{
+		long newest = newestId;
+		if (id <= newest)
+		{
+			return id > newest - buckets.length;
+		}
+
+		synchronized (this)
+		{
+			newest = newestId;
+			if (id <= newest)
+			{
+				return id > newest - buckets.length;
+			}
+			newestId = id;
+		}
+
+		// Only once per bucket of issue time, as buckets are not dropped while they stay in range
+		long oldest = id - buckets.length + 1;
+		for (int slot = 0; slot < buckets.length; slot++)
+		{
+			synchronized (locks[slot % locks.length])
+			{
+				Bucket bucket = buckets[slot];
+				if (bucket != null && bucket.id < oldest)
+				{
+					buckets[slot] = null;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return how many nonces a new bucket is sized for, what the bucket before it received
+	 */
+	private int initialCapacity(long id)
+	{
+		// Only a hint, read without its lock so that no thread ever holds two stripes
+		Bucket previous = buckets[slot(id - 1)];
+		int observed = previous != null && previous.id == id - 1 ? previous.size() : 0;
+		return Math.min(Math.max(MIN_BUCKET_CAPACITY, observed), expectedPerBucket);
+	}
+
+	private int slot(long id)
+	{
+		return (int) Math.floorMod(id, (long) buckets.length);
+	}
+
+	private static long mix(long z)
+	{
+		// SplitMix64 finalizer, nonces are random but this keeps the index sound for any input
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int tableSize(long minimum)
+	{
+		long size = Long.highestOneBit(Math.max(64, minimum - 1)) << 1;
+		return Math.toIntExact(size);
+	}
+
+	private static final class Bucket
+	{
+		private static final long EMPTY = 0;
+
+		private final long id;
+		private final int maxCapacity;
+
+		private long[] bloom;
+		private long bloomMask;
+		private long[] exact;
+		private int exactMask;
+		private int exactLimit;
+
+		private int exactSize;
+		private boolean hasZero;
+		private boolean overflowed;
+
+		Bucket(long id, int capacity, int maxCapacity)
+		{
+			this.id = id;
+			this.maxCapacity = maxCapacity;
+			allocate(capacity);
+		}
+
+		int size()
+		{
+			return exactSize + (hasZero ? 1 : 0);
+		}
+
+		boolean add(long nonce)
+		{
+			if (exactSize >= exactLimit && exactLimit < maxCapacity)
+			{
+				grow();
+			}
+
+			long hash = mix(nonce);
+			boolean maybeSeen = setBloomBits(hash);
+			if (maybeSeen)
+			{
+				if (overflowed)
+				{
+					return false;
+				}
+				if (containsExact(nonce, hash))
+				{
+					return false;
+				}
+			}
+
+			addExact(nonce, hash);
+			return true;
+		}
+
+		private void allocate(int capacity)
+		{
+			int bloomBits = tableSize((long) capacity * BLOOM_BITS_PER_NONCE);
+			bloom = new long[bloomBits / Long.SIZE];
+			bloomMask = bloomBits - 1;
+			// Open addressing at no more than half full
+			exact = new long[tableSize(capacity * 2L)];
+			exactMask = exact.length - 1;
+			exactLimit = exact.length / 2;
+		}
+
+		/**
+		 * Doubles the capacity, up to the maximum, and adds every nonce back into the new tables.
+		 */
+		private void grow()
+		{
+			long[] old = exact;
+			allocate((int) Math.min(exactLimit * 2L, maxCapacity));
+			exactSize = 0;
+			for (long nonce : old)
+			{
+				if (nonce != EMPTY)
+				{
+					long hash = mix(nonce);
+					setBloomBits(hash);
+					addExact(nonce, hash);
+				}
+			}
+			if (hasZero)
+			{
+				setBloomBits(mix(EMPTY));
+			}
+		}
+
+		/**
+		 * @return true if every bit was already set, so the nonce may have been seen
+		 */
+		private boolean setBloomBits(long hash)
+		{
+			long h1 = hash;
+			long h2 = (hash >>> 32) | 1;
+
+			boolean maybeSeen = true;
+			for (int i = 0; i < BLOOM_HASHES; i++)
+			{
+				long bit = (h1 + i * h2) & bloomMask;
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				if ((bloom[word] & mask) == 0)
+				{
+					maybeSeen = false;
+					bloom[word] |= mask;
+				}
+			}
+			return maybeSeen;
+		}
+
+		private boolean containsExact(long nonce, long hash)
+		{
+			if (nonce == EMPTY)
+			{
+				return hasZero;
+			}
+
+			for (int slot = (int) hash & exactMask; ; slot = (slot + 1) & exactMask)
+			{
+				long value = exact[slot];
+				if (value == nonce)
+				{
+					return true;
+				}
+				if (value == EMPTY)
+				{
+					return false;
+				}
+			}
+		}
+
+		private void addExact(long nonce, long hash)
+		{
+			if (nonce == EMPTY)
+			{
+				hasZero = true;
+				return;
+			}
+
+			if (exactSize >= exactLimit)
+			{
+				overflowed = true;
+				return;
+			}
+
+			int slot = (int) hash & exactMask;
+			while (exact[slot] != EMPTY)
+			{
+				slot = (slot + 1) & exactMask;
+			}
+			exact[slot] = nonce;
+			exactSize++;
+		}
+	}
+}
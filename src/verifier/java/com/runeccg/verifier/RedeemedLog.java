@@ -0,0 +1,138 @@
+package com.runeccg.verifier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the nonces of redeemed codes in a file, so a code redeemed in one run of the verifier is
+ * still a replay in the next.
+ * <p>
+ * The file is a plain list of 16 byte records, nonce then issue time in epoch seconds, appended
+ * to as codes are redeemed. Opening it adds every record to a {@link NonceIndex}, which forgets
+ * the expired ones as it does for live codes. A record cut short by a crash is dropped. The file
+ * grows by 16 bytes per redeemed code and is never compacted. It can be deleted once every code
+ * in it has expired. Only one verifier can have it open at a time.
+ */
+public final class RedeemedLog implements Closeable
+{
+	static final int RECORD_LENGTH = 2 * Long.BYTES;
+
+	private static final int BUFFER_RECORDS = 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_LENGTH);
+	private final long loaded;
+
+	private RedeemedLog(FileChannel channel, long loaded)
+	{
+		this.channel = channel;
+		this.loaded = loaded;
+	}
+
+	/**
+	 * Opens the log, creating it if it does not exist, and adds the nonces it holds to the index.
+	 *
+	 * @throws IOException if it cannot be read, or another verifier has it open
+	 */
+	public static RedeemedLog open(Path file, NonceIndex index) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			// Held until the channel is closed
+			if (channel.tryLock() == null)
+			{
+				throw new IOException(file + " is in use by another verifier");
+			}
+
+			long length = channel.size() / RECORD_LENGTH * RECORD_LENGTH;
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_LENGTH);
+			long position = 0;
+			while (position < length)
+			{
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), length - position));
+				while (buffer.hasRemaining())
+				{
+					if (channel.read(buffer, position + buffer.position()) < 0)
+					{
+						throw new IOException(file + " was truncated while being read");
+					}
+				}
+				buffer.flip();
+				while (buffer.hasRemaining())
+				{
+					index.add(buffer.getLong(), buffer.getLong());
+				}
+				position += buffer.limit();
+			}
+
+			// New records start on a record boundary, after any torn one is cut off
+			channel.truncate(length);
+			channel.position(length);
+			return new RedeemedLog(channel, length / RECORD_LENGTH);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return how many records the log held when it was opened
+	 */
+	public long getLoaded()
+	{
+		return loaded;
+	}
+
+	/**
+	 * Adds a redeemed code's nonce. Only on disk once {@link #sync()} returns.
+	 */
+	public void append(long nonce, long timestamp) throws IOException
+	{
+		if (!buffer.hasRemaining())
+		{
+			write();
+		}
+		buffer.putLong(nonce);
+		buffer.putLong(timestamp);
+	}
+
+	/**
+	 * Writes the nonces appended so far and forces them to disk.
+	 */
+	public void sync() throws IOException
+	{
+		write();
+		channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			sync();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	private void write() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,94 @@
+package com.runeccg.verifier;
+
+/**
+ * Outcome of verifying a single cash-out code. The decoded fields are only meaningful when the
+ * code was at least well formed and correctly signed.
+ */
+public final class VerificationResult
+{
+	public enum Status
+	{
+		/**
+		 * Correctly signed, within the time window and seen for the first time.
+		 */
+		VALID,
+		/**
+		 * Not Base64, or not the length of a code.
+		 */
+		MALFORMED,
+		/**
+		 * The signature does not match the payload.
+		 */
+		BAD_SIGNATURE,
+		/**
+		 * Issued longer ago than the verifier accepts.
+		 */
+		EXPIRED,
+		/**
+		 * Timestamped further in the future than the allowed clock skew.
+		 */
+		FROM_FUTURE,
+		/**
+		 * The nonce was already redeemed.
+		 */
+		REPLAYED
+	}
+
+	private static final VerificationResult MALFORMED = new VerificationResult(Status.MALFORMED, 0, 0, 0);
+
+	private final Status status;
+	private final long nonce;
+	private final long timestamp;
+	private final int amount;
+
+	VerificationResult(Status status, long nonce, long timestamp, int amount)
+	{
+		this.status = status;
+		this.nonce = nonce;
+		this.timestamp = timestamp;
+		this.amount = amount;
+	}
+
+	static VerificationResult malformed()
+	{
+		return MALFORMED;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	public boolean isValid()
+	{
+		return status == Status.VALID;
+	}
+
+	public long getNonce()
+	{
+		return nonce;
+	}
+
+	/**
+	 * @return when the code was issued, in epoch seconds
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * @return the number of Silver Coins the code is worth
+	 */
+	public int getAmount()
+	{
+		return amount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "VerificationResult{status=" + status + ", nonce=" + Long.toHexString(nonce)
+			+ ", timestamp=" + timestamp + ", amount=" + amount + "}";
+	}
+}
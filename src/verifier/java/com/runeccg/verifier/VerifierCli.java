@@ -0,0 +1,122 @@
+package com.runeccg.verifier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies codes read from standard input, one per line, and writes one CSV line per code:
+ * {@code code,status,amount,timestamp}. Codes repeated in the input are reported as replays.
+ * <p>
+ * The signing key is read from the {@code RUNECCG_SECRET_KEY} environment variable. An optional
+ * first argument sets how many days a code stays redeemable, 365 by default. An optional second
+ * argument names the file redeemed nonces are kept in, {@code runeccg-redeemed.bin} in the working
+ * directory by default. Each run is one-shot, so codes redeemed by earlier runs are only known
+ * from that file: pointing a run at another file, or deleting it before its codes have expired,
+ * lets those codes be redeemed again. A code is only written out as valid once its nonce is on disk.
+ */
+public final class VerifierCli
+{
+	private static final String KEY_ENVIRONMENT_VARIABLE = "RUNECCG_SECRET_KEY";
+	private static final long MAX_SKEW_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+	private static final int EXPECTED_PER_HOUR = 100_000;
+	private static final long DEFAULT_MAX_AGE_DAYS = 365;
+	private static final String DEFAULT_REDEEMED_FILE = "runeccg-redeemed.bin";
+	// Codes verified between forcing the redeemed nonces to disk and writing out their results
+	private static final int SYNC_EVERY = 1024;
+
+	private VerifierCli()
+	{
+	}
+
+	/**
+	 * @return a verifier set up the way the command line sets it up, for codes redeemable for {@code maxAgeDays}
+	 */
+	public static CodeVerifier createVerifier(byte[] secretKey, long maxAgeDays)
+	{
+		return createVerifier(secretKey, maxAgeDays, createNonceIndex(maxAgeDays));
+	}
+
+	/**
+	 * @param nonceIndex an index made by {@link #createNonceIndex(long)} for the same {@code maxAgeDays}
+	 */
+	public static CodeVerifier createVerifier(byte[] secretKey, long maxAgeDays, NonceIndex nonceIndex)
+	{
+		return new CodeVerifier(secretKey, TimeUnit.DAYS.toSeconds(maxAgeDays), MAX_SKEW_SECONDS, nonceIndex);
+	}
+
+	/**
+	 * @return an empty nonce index sized the way the command line sizes it
+	 */
+	public static NonceIndex createNonceIndex(long maxAgeDays)
+	{
+		return new NonceIndex(TimeUnit.DAYS.toSeconds(maxAgeDays) + MAX_SKEW_SECONDS, 3600, EXPECTED_PER_HOUR);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		String key = System.getenv(KEY_ENVIRONMENT_VARIABLE);
+		if (key == null || key.isEmpty())
+		{
+			System.err.println(KEY_ENVIRONMENT_VARIABLE + " is not set");
+			System.exit(2);
+			return;
+		}
+
+		long maxAgeDays = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MAX_AGE_DAYS;
+		Path redeemedFile = Paths.get(args.length > 1 ? args[1] : DEFAULT_REDEEMED_FILE);
+		NonceIndex nonceIndex = createNonceIndex(maxAgeDays);
+
+		long start = System.nanoTime();
+		long count = 0;
+		long valid = 0;
+		try (RedeemedLog redeemed = RedeemedLog.open(redeemedFile, nonceIndex);
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)))
+		{
+			System.err.printf("Loaded %d redeemed codes from %s%n", redeemed.getLoaded(), redeemedFile);
+			CodeVerifier verifier = createVerifier(key.getBytes(StandardCharsets.UTF_8), maxAgeDays, nonceIndex);
+			// Results waiting for their nonces to be forced to disk
+			StringBuilder pending = new StringBuilder();
+			long now = System.currentTimeMillis() / 1000;
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				if (line.trim().isEmpty())
+				{
+					continue;
+				}
+
+				VerificationResult result = verifier.verify(line, now);
+				if (result.isValid())
+				{
+					redeemed.append(result.getNonce(), result.getTimestamp());
+					valid++;
+				}
+				pending.append(line.trim())
+					.append(',').append(result.getStatus().name())
+					.append(',').append(result.getAmount())
+					.append(',').append(result.getTimestamp())
+					.append(System.lineSeparator());
+
+				if (++count % SYNC_EVERY == 0)
+				{
+					redeemed.sync();
+					out.append(pending);
+					pending.setLength(0);
+				}
+			}
+			redeemed.sync();
+			out.append(pending);
+		}
+
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		System.err.printf("Verified %d codes (%d valid) in %.3fs, %.0f codes/s%n", count, valid, seconds, count / seconds);
+	}
+}